@@ -0,0 +1,69 @@
+#!/usr/bin/env bash
+# Usage: packaging/build-dist.sh [installDirectory]
+#
+# Builds a self-contained distribution in installDirectory, target/dist by default:
+#   lib/taskloadcognitive.jar  the application with its images bundled
+#   lib/taskloadcognitive.jsa  application class-data-sharing archive from a training run
+#   runtime/                   a jlink runtime trimmed to the modules the application uses
+#   taskloadcognitive          launcher that starts the jar on that runtime with the archive
+# Needs JDK 17 or later, taken from JAVA_HOME or from the javac on the PATH.
+#
+# The distribution cannot be moved once built: the archive records the absolute path of the jar it
+# was trained with, and JDK 17 refuses it for a jar anywhere else. Build it where it will be run
+# from; a moved copy still starts, but without the archive.
+set -euo pipefail
+
+# Absolute, because the archive records the class path it was trained with and the launcher
+# always starts the jar by its absolute path
+DIST="${1:-$(dirname "$0")/../target/dist}"
+mkdir -p "$DIST"
+DIST="$(cd "$DIST" && pwd)"
+cd "$(dirname "$0")/.."
+JAVA_HOME="${JAVA_HOME:-$(dirname "$(dirname "$(readlink -f "$(command -v javac)")")")}"
+JAR=taskloadcognitive.jar
+ARCHIVE=taskloadcognitive.jsa
+
+# Runs a GUI command, under a virtual framebuffer when there is no display
+run_gui() {
+    if [ -z "${DISPLAY:-}" ] && command -v xvfb-run > /dev/null; then
+        xvfb-run -a "$@"
+    else
+        "$@"
+    fi
+}
+
+mvn -B -q package
+
+rm -rf "$DIST/lib" "$DIST/runtime"
+mkdir -p "$DIST/lib"
+cp "target/$JAR" "$DIST/lib/"
+
+MODULES="$("$JAVA_HOME/bin/jdeps" --print-module-deps --ignore-missing-deps "target/$JAR")"
+echo "Linking runtime with modules: $MODULES"
+"$JAVA_HOME/bin/jlink" \
+    --add-modules "$MODULES" \
+    --strip-debug \
+    --no-header-files \
+    --no-man-pages \
+    --compress=2 \
+    --output "$DIST/runtime"
+# The default CDS archive for the runtime's own classes, which jlink only builds itself from JDK 18 on
+"$DIST/runtime/bin/java" -Xshare:dump > /dev/null
+
+# The training run goes from JVM start to the first stimulus and exits, see StartupProbe.
+# Without any display, fall back to the headless render benchmark, which still loads most of
+# the Swing, Java2D and ImageIO classes a session needs.
+echo "Training class-data-sharing archive"
+if [ -n "${DISPLAY:-}" ] || command -v xvfb-run > /dev/null; then
+    run_gui "$DIST/runtime/bin/java" -XX:ArchiveClassesAtExit="$DIST/lib/$ARCHIVE" \
+        -Dtaskload.startup.probe=true -cp "$DIST/lib/$JAR" Application
+else
+    echo "No display or xvfb-run, training headless"
+    "$DIST/runtime/bin/java" -XX:ArchiveClassesAtExit="$DIST/lib/$ARCHIVE" \
+        -Djava.awt.headless=true -cp "$DIST/lib/$JAR" RenderBenchmark 20 20 > /dev/null
+fi
+
+cp packaging/taskloadcognitive "$DIST/"
+chmod +x "$DIST/taskloadcognitive"
+du -sh "$DIST/runtime" "$DIST/lib/$ARCHIVE"
+echo "Distribution ready in $DIST"
@@ -0,0 +1,52 @@
+#!/usr/bin/env bash
+# Compares cold start before and after packaging: time from JVM start to the welcome screen and
+# to the first stimulus, as reported by StartupProbe, plus wall clock time for the whole run.
+#   before: the system JDK running loose classes, the way the app was run from the IDE
+#   after:  target/dist from build-dist.sh, on the jlink runtime with the AppCDS archive
+# Usage: packaging/startup-benchmark.sh [runs]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS="${1:-10}"
+DIST=target/dist
+
+if [ ! -x "$DIST/taskloadcognitive" ]; then
+    echo "Run packaging/build-dist.sh first" >&2
+    exit 1
+fi
+
+run_gui() {
+    if [ -z "${DISPLAY:-}" ] && command -v xvfb-run > /dev/null; then
+        xvfb-run -a "$@"
+    else
+        "$@"
+    fi
+}
+
+# Prints the median of the numbers on stdin
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { print (NR % 2) ? values[(NR + 1) / 2] : (values[NR / 2] + values[NR / 2 + 1]) / 2 }'
+}
+
+measure() {
+    local label="$1"
+    shift
+    local welcome=() stimulus=() wall=()
+    for _ in $(seq "$RUNS"); do
+        local start end output
+        start=$(date +%s%N)
+        output="$(run_gui "$@" 2> /dev/null)"
+        end=$(date +%s%N)
+        welcome+=("$(echo "$output" | sed -n 's/^startup welcomeScreen=\([0-9]*\)ms$/\1/p')")
+        stimulus+=("$(echo "$output" | sed -n 's/^startup firstStimulus=\([0-9]*\)ms$/\1/p')")
+        wall+=("$(( (end - start) / 1000000 ))")
+    done
+    printf '%-8s welcomeScreen=%sms firstStimulus=%sms wallClock=%sms (median of %d)\n' "$label" \
+        "$(printf '%s\n' "${welcome[@]}" | median)" \
+        "$(printf '%s\n' "${stimulus[@]}" | median)" \
+        "$(printf '%s\n' "${wall[@]}" | median)" \
+        "$RUNS"
+}
+
+measure before java -Dtaskload.startup.probe=true -cp target/classes Application
+TASKLOAD_JAVA_OPTS=-Dtaskload.startup.probe=true measure after "$DIST/taskloadcognitive"
@@ -2,8 +2,15 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Arrays;
@@ -13,6 +20,8 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 public class Application {
@@ -24,31 +33,78 @@ public class Application {
     private static final Logger LOGGER = Logger.getLogger("MainApplication");
 
     private static final int DEFAULT_NUM_THREADS = 10;
-
-    private TaskLoadCognitiveExperiment experiment;
+    private static final String DEFAULT_SESSION_NAME = "default";
+    // Path of an evdev device to read key presses from instead of AWT, e.g. /dev/input/event3
+    static final String EVDEV_DEVICE_PROPERTY = "taskload.evdev";
+    // Path of a recorded evdev stream to replay as the key input, for testing without hardware
+    static final String EVDEV_REPLAY_PROPERTY = "taskload.evdev.replay";
+    // How often a level change screen checks whether the session was closed meanwhile
+    private static final long SPACE_POLL_MILLIS = 100;
+
+    private volatile TaskLoadCognitiveExperiment experiment;
     private JFrame mainFrame;
     private Application self;
     private Thread applicationThread;
-    private Map<Integer, ImagePanel> images;
-    private ImagePanel blackBackground;
-    private boolean inInstructions;
+    private StimulusPanel stimulusPanel;
+    private JPanel blackBackground;
+    private volatile boolean inInstructions;
+    // Released by the next space press while a level change instruction is waiting to be acknowledged
+    private volatile CountDownLatch spaceLatch;
+    private volatile boolean closed;
     private boolean inPreExperimentInstructions;
     private final ExecutorService pool;
     private int currentInstruction = 0;
     private String uid;
     private ExperimentLevel level;
     private int isPracticeMode;
+    private Protocol protocol;
+    private final AtomicLong pendingDisplayNanos;
+    private final String sessionName;
+    private final GraphicsConfiguration screen;
+    private final boolean ownsProcess;
+    private final String keyboardDevice;
+    private final String replayRecording;
+    private EvdevKeyboard keyboard;
+    // Set for a session started without a participant, which skips the dialogs and instruction screens
+    private volatile Runnable whenUnattendedFinished;
+    private final Metrics metrics;
 
     private final Map<ExperimentLevel, Instruction> instructionMap;
 
     private Application() {
+        this(DEFAULT_SESSION_NAME, null, null, true,
+                System.getProperty(EVDEV_DEVICE_PROPERTY), System.getProperty(EVDEV_REPLAY_PROPERTY));
+    }
+
+    /**
+     * @param screen the screen to open the session window on, or null for the default screen
+     * @param ownsProcess whether closing this session's window should exit the JVM
+     * @param keyboardDevice evdev device to take key presses from, or null to use AWT key events
+     * @param replayRecording recorded evdev stream to replay as the key presses instead, or null
+     */
+    Application(final String sessionName,
+                final GraphicsConfiguration screen,
+                final Protocol protocol,
+                final boolean ownsProcess,
+                final String keyboardDevice,
+                final String replayRecording) {
+        this.sessionName = sessionName;
+        this.screen = screen;
+        this.protocol = protocol;
+        this.ownsProcess = ownsProcess;
+        this.keyboardDevice = keyboardDevice;
+        this.replayRecording = replayRecording;
+        this.keyboard = null;
+        this.whenUnattendedFinished = null;
+        metrics = new Metrics(sessionName);
         inInstructions = false;
         inPreExperimentInstructions = false;
         isPracticeMode = 0;
         experiment = null;
         self = this;
-        images = new HashMap<>();
-        blackBackground = new ImagePanel("images/black.png");
+        pendingDisplayNanos = new AtomicLong(0);
+        blackBackground = new JPanel();
+        blackBackground.setBackground(StimulusPanel.BACKGROUND);
 
         instructionMap = new HashMap<>();
         Arrays.asList(ExperimentLevel.values()).forEach(level -> instructionMap.put(level, new Instruction(level)));
@@ -56,10 +112,28 @@ public class Application {
         pool = Executors.newFixedThreadPool(DEFAULT_NUM_THREADS);
     }
 
-    private void initNumberImage() {
-        for (int i = 1; i <= 8; i++) {
-            images.putIfAbsent(i, new ImagePanel("images/number" + i + ".png"));
-        }
+    private void initStimulusPanel() {
+        stimulusPanel = new StimulusPanel() {
+            @Override
+            protected void paintComponent(final Graphics graphics) {
+                super.paintComponent(graphics);
+                final long displayStartNanos = pendingDisplayNanos.getAndSet(0);
+                if (displayStartNanos != 0) {
+                    metrics.getDisplayToPaint().recordSince(displayStartNanos);
+                }
+                if (StartupProbe.mark(StartupProbe.FIRST_STIMULUS)) {
+                    StartupProbe.finish();
+                }
+            }
+        };
+        // Rasterize the digits whenever the window changes size, rather than on the next stimulus
+        mainFrame.getContentPane().addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(final ComponentEvent e) {
+                stimulusPanel.prepare(mainFrame.getGraphicsConfiguration(), mainFrame.getContentPane().getSize());
+            }
+        });
+        stimulusPanel.prepare(mainFrame.getGraphicsConfiguration(), mainFrame.getContentPane().getSize());
     }
 
     private void initBackground() {
@@ -68,7 +142,16 @@ public class Application {
         htmlBuilder.append("<h1>Welcome!</h1>");
         htmlBuilder.append("<h1>Click the start button to begin</h1>");
         htmlBuilder.append("</html>");
-        final JLabel label = new JLabel(htmlBuilder.toString(), SwingConstants.CENTER);
+        final JLabel label = new JLabel(htmlBuilder.toString(), SwingConstants.CENTER) {
+            @Override
+            protected void paintComponent(final Graphics graphics) {
+                super.paintComponent(graphics);
+                if (StartupProbe.mark(StartupProbe.WELCOME_SCREEN)) {
+                    // Go straight to a stimulus, as if a session had just started
+                    SwingUtilities.invokeLater(() -> displayTask(1));
+                }
+            }
+        };
         label.setOpaque(true);
         label.setBackground(Color.BLACK);
         label.setForeground(Color.WHITE);
@@ -88,18 +171,51 @@ public class Application {
 
     public void displayTask(final int number) {
         LOGGER.info(String.format("Current displayed number=%s", number));
+        pendingDisplayNanos.set(System.nanoTime());
+        metrics.getTasksDisplayed().increment();
+
+        stimulusPanel.setNumber(number);
+        mainFrame.getContentPane().removeAll();
+        mainFrame.getContentPane().add(stimulusPanel);
+        mainFrame.getContentPane().revalidate();
+        mainFrame.getContentPane().repaint();
+    }
+
+    public void showLevelInstruction(final ExperimentLevel level) {
+        mainFrame.getContentPane().removeAll();
+        mainFrame.getContentPane().add(instructionMap.get(level));
+        mainFrame.getContentPane().revalidate();
+        mainFrame.getContentPane().repaint();
+        LOGGER.info(String.format("InstructionShown=%s", level.getName()));
+        if (whenUnattendedFinished != null) {
+            return;
+        }
+
+        try {
+            waitForSpace();
+        } catch (final Exception e) {
+            LOGGER.warning("Interrupted while waiting for instruction to be acknowledged");
+        }
+    }
 
+    public void showRestBreak() {
+        final JLabel label = new JLabel("<html><h1>Take a break</h1></html>", SwingConstants.CENTER);
+        label.setOpaque(true);
+        label.setBackground(Color.BLACK);
+        label.setForeground(Color.WHITE);
         mainFrame.getContentPane().removeAll();
-        mainFrame.getContentPane().add(images.get(number));
+        mainFrame.getContentPane().add(label);
         mainFrame.getContentPane().revalidate();
         mainFrame.getContentPane().repaint();
     }
 
     public void clearScreen() {
+        final long clearStartNanos = System.nanoTime();
         mainFrame.getContentPane().removeAll();
         mainFrame.getContentPane().add(blackBackground);
         mainFrame.getContentPane().revalidate();
         mainFrame.getContentPane().repaint();
+        metrics.getClearScreen().recordSince(clearStartNanos);
     }
 
     private void showInstruction() {
@@ -123,17 +239,46 @@ public class Application {
 
             @Override
             public void keyReleased(KeyEvent e) {
-                LOGGER.info(String.format("inPreExperimentInstructions=%s", inPreExperimentInstructions));
-                if (inPreExperimentInstructions) {
-                    inPreExperimentInstructions = false;
-                    startExperiment(uid, level);
+                // With an evdev keyboard the instructions are acknowledged from onKeyboardPress instead
+                if (keyboard == null) {
+                    acknowledgePreExperimentInstructions();
                 }
             }
         });
     }
 
+    private void acknowledgePreExperimentInstructions() {
+        if (inPreExperimentInstructions) {
+            LOGGER.info("Pre-experiment instructions acknowledged");
+            inPreExperimentInstructions = false;
+            startExperiment(uid, level);
+        }
+    }
+
+    /**
+     * Moves the instructions opened from the menu on to the next level, or back to the start page after the last.
+     */
+    private void showNextInstruction() {
+        if (!inInstructions || (experiment != null && !experiment.getStarted()) || inPreExperimentInstructions) {
+            return;
+        }
+
+        final ExperimentLevel[] levels = ExperimentLevel.values();
+        if (currentInstruction >= levels.length) {
+            currentInstruction = 0;
+            resetToStartingPage();
+        } else {
+            mainFrame.getContentPane().removeAll();
+            mainFrame.getContentPane().add(instructionMap.get(levels[currentInstruction++]));
+            mainFrame.getContentPane().revalidate();
+            mainFrame.getContentPane().repaint();
+            LOGGER.info("Instruction: " + currentInstruction);
+        }
+    }
+
     private void startExperiment(final String uid, final ExperimentLevel level) {
-        experiment = new TaskLoadCognitiveExperiment(uid, level, isPracticeMode, self);
+        final Protocol sessionProtocol = protocol != null ? protocol : Protocol.defaultFor(level, isPracticeMode);
+        experiment = new TaskLoadCognitiveExperiment(uid, sessionProtocol, isPracticeMode, self);
         final Runnable runnable = () -> experiment.start();
         applicationThread = new Thread(runnable);
         pool.submit(applicationThread);
@@ -151,9 +296,11 @@ public class Application {
         // Initialize menu item
         final JMenuItem instructionMenu = new JMenuItem("Read Instructions");
         final JMenuItem start = new JMenuItem("Start Experiment");
+        final JMenuItem loadProtocol = new JMenuItem("Load Protocol");
         final JMenuItem exit = new JMenuItem("Exit");
         menu.add(instructionMenu);
         menu.add(start);
+        menu.add(loadProtocol);
         menu.add(exit);
 
         instructionMenu.addActionListener(e -> {
@@ -181,21 +328,8 @@ public class Application {
 
                 @Override
                 public void keyReleased(KeyEvent e) {
-                    if (!inInstructions || (experiment != null && !experiment.getStarted()) || inPreExperimentInstructions) {
-                        return;
-                    }
-
-                    if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-                        if (currentInstruction >= levels.length) {
-                            currentInstruction = 0;
-                            resetToStartingPage();
-                        } else {
-                            mainFrame.getContentPane().removeAll();
-                            mainFrame.getContentPane().add(instructionMap.get(levels[currentInstruction++]));
-                            mainFrame.getContentPane().revalidate();
-                            mainFrame.getContentPane().repaint();
-                            LOGGER.info("Instruction: " + currentInstruction);
-                        }
+                    if (keyboard == null && e.getKeyCode() == KeyEvent.VK_SPACE) {
+                        showNextInstruction();
                     }
                 }
             });
@@ -203,14 +337,34 @@ public class Application {
 
         start.addActionListener(e -> start());
 
+        loadProtocol.addActionListener(e -> {
+            final JFileChooser chooser = new JFileChooser() {
+                @Override
+                protected JDialog createDialog(final Component parent) {
+                    final JDialog dialog = super.createDialog(parent);
+                    dialog.setModalityType(Dialog.ModalityType.DOCUMENT_MODAL);
+                    return dialog;
+                }
+            };
+            if (chooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+
+            try {
+                protocol = Protocol.load(chooser.getSelectedFile());
+                LOGGER.info(String.format("Protocol=%s", protocol.getName()));
+            } catch (final IOException | ProtocolException ex) {
+                showSessionDialog(new JOptionPane(
+                        "Failed to load protocol: " + ex.getMessage(),
+                        JOptionPane.ERROR_MESSAGE
+                ), "Load Protocol");
+            }
+        });
+
         exit.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (experiment != null) {
-                    experiment.stop();
-                }
-                mainFrame.dispose();
-                pool.shutdown();
+                shutdown();
             }
         });
 
@@ -222,64 +376,137 @@ public class Application {
     private void start() {
         mainFrame.getContentPane().removeAll();
         mainFrame.getContentPane().setLayout(new GridLayout(1, 1));
-        uid = JOptionPane.showInputDialog(
-                mainFrame,
+        final JOptionPane uidPane = new JOptionPane(
                 "Enter your participant ID",
-                "Enter Participant ID",
-                JOptionPane.NO_OPTION
+                JOptionPane.INFORMATION_MESSAGE,
+                JOptionPane.OK_CANCEL_OPTION
         );
+        uidPane.setWantsInput(true);
+        uid = (String) showSessionInputDialog(uidPane, "Enter Participant ID");
         if (uid == null) {
             resetToStartingPage();
             return;
         }
         LOGGER.info(String.format("UID=%s", uid));
 
-        final ExperimentLevel[] levels = new ExperimentLevel[] {
-                ExperimentLevel.EASY,
-                ExperimentLevel.MEDIUM,
-                ExperimentLevel.DIFFICULT
-        };
-        level = (ExperimentLevel) JOptionPane.showInputDialog(
-                mainFrame,
-                "Choose task level",
-                "Choose Level",
-                JOptionPane.QUESTION_MESSAGE,
-                null,
-                levels,
-                levels[0]
-        );
+        if (protocol != null) {
+            level = protocol.getFirstLevel();
+        } else {
+            final ExperimentLevel[] levels = new ExperimentLevel[] {
+                    ExperimentLevel.EASY,
+                    ExperimentLevel.MEDIUM,
+                    ExperimentLevel.DIFFICULT
+            };
+            final JOptionPane levelPane = new JOptionPane(
+                    "Choose task level",
+                    JOptionPane.QUESTION_MESSAGE,
+                    JOptionPane.OK_CANCEL_OPTION
+            );
+            levelPane.setWantsInput(true);
+            levelPane.setSelectionValues(levels);
+            levelPane.setInitialSelectionValue(levels[0]);
+            level = (ExperimentLevel) showSessionInputDialog(levelPane, "Choose Level");
+        }
         if (level == null) {
             resetToStartingPage();
             return;
         }
-        isPracticeMode = JOptionPane.showConfirmDialog(
-                mainFrame,
+        final Object practiceChoice = showSessionDialog(new JOptionPane(
                 "Do you want to practice? If so, click 'Yes' and the result of this run won't be recorded.",
-                "Practice mode",
+                JOptionPane.QUESTION_MESSAGE,
                 JOptionPane.YES_NO_OPTION
-        );
+        ), "Practice mode");
+        isPracticeMode = practiceChoice instanceof Integer ? (Integer) practiceChoice : JOptionPane.CLOSED_OPTION;
         LOGGER.info(String.format("isPracticeMode=%s", isPracticeMode));
         LOGGER.info(String.format("Level=%s", level.getName()));
+        if (protocol != null) {
+            LOGGER.info(String.format("Protocol=%s", protocol.getName()));
+        }
         showInstruction();
     }
 
+    /**
+     * Shows the pane as a dialog that only blocks this session's window. JOptionPane's own dialogs are
+     * application modal, so one session asking a question would freeze every other session in the JVM.
+     *
+     * @return the option chosen, as JOptionPane.getValue
+     */
+    private Object showSessionDialog(final JOptionPane pane, final String title) {
+        final JDialog dialog = pane.createDialog(mainFrame, title);
+        dialog.setModalityType(Dialog.ModalityType.DOCUMENT_MODAL);
+        pane.selectInitialValue();
+        dialog.setVisible(true);
+        dialog.dispose();
+        return pane.getValue();
+    }
+
+    /**
+     * @return the value entered or selected, or null if the dialog was cancelled
+     */
+    private Object showSessionInputDialog(final JOptionPane pane, final String title) {
+        showSessionDialog(pane, title);
+        final Object value = pane.getInputValue();
+        return value == JOptionPane.UNINITIALIZED_VALUE ? null : value;
+    }
+
+    private void shutdown() {
+        closed = true;
+        if (experiment != null) {
+            experiment.stop();
+        }
+        // Let an experiment waiting on a level change screen see the stop and finish
+        final CountDownLatch latch = spaceLatch;
+        if (latch != null) {
+            latch.countDown();
+        }
+        mainFrame.dispose();
+        pool.shutdown();
+        metrics.close();
+        if (keyboard != null) {
+            keyboard.close();
+        }
+    }
+
     private void waitForSpace() throws Exception {
         final CountDownLatch latch = new CountDownLatch(1);
+        // An evdev keyboard releases the latch from onKeyboardPress, without needing window focus
+        spaceLatch = latch;
         KeyEventDispatcher dispatcher = new KeyEventDispatcher() {
             // Anonymous class invoked from EDT
             public boolean dispatchKeyEvent(KeyEvent e) {
-                if (e.getKeyCode() == KeyEvent.VK_SPACE)
+                // The focus manager is shared by every session in the JVM, so only react to our own window
+                if (e.getKeyCode() == KeyEvent.VK_SPACE && isInMainFrame(e.getComponent()))
                     latch.countDown();
                 return false;
             }
         };
         KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(dispatcher);
-        latch.await();  // current thread waits here until countDown() is called
-        KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(dispatcher);
+        try {
+            // current thread waits here until countDown() is called, or the session is closed
+            while (!closed && !latch.await(SPACE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // keep waiting
+            }
+        } finally {
+            spaceLatch = null;
+            KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(dispatcher);
+        }
+    }
+
+    private boolean isInMainFrame(final Component component) {
+        return component == mainFrame || SwingUtilities.getWindowAncestor(component) == mainFrame;
+    }
+
+    public Metrics getMetrics() {
+        return this.metrics;
     }
 
     public void endExperiment() {
-        JOptionPane.showMessageDialog(mainFrame.getContentPane(), "The experiment has end");
+        final Runnable whenFinished = whenUnattendedFinished;
+        if (whenFinished != null) {
+            whenFinished.run();
+            return;
+        }
+        showSessionDialog(new JOptionPane("The experiment has end", JOptionPane.INFORMATION_MESSAGE), "Message");
         resetToStartingPage();
     }
 
@@ -297,9 +524,24 @@ public class Application {
             return;
         }
 
-        mainFrame = new JFrame(MAIN_FRAME_TITLE);
-        mainFrame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        if (ownsProcess) {
+            mainFrame = new JFrame(MAIN_FRAME_TITLE, screen);
+            mainFrame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        } else {
+            mainFrame = new JFrame(MAIN_FRAME_TITLE + " - " + sessionName, screen);
+            mainFrame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+            mainFrame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(final WindowEvent e) {
+                    shutdown();
+                }
+            });
+        }
         mainFrame.setSize(new Dimension(MAIN_FRAME_WIDTH_IN_PIXELS, MAIN_FRAME_HEIGHT_IN_PIXELS));
+        if (screen != null) {
+            final Rectangle bounds = screen.getBounds();
+            mainFrame.setLocation(bounds.x, bounds.y);
+        }
         mainFrame.setVisible(true);
         mainFrame.setFocusable(true);
         mainFrame.setFocusTraversalKeysEnabled(false);
@@ -311,32 +553,121 @@ public class Application {
 
             @Override
             public void keyPressed(KeyEvent e) {
-
+                // With an evdev keyboard the presses are scored from onKeyboardPress instead.
+                // Scored on the press, stamped with when it happened, like the evdev backend.
+                if (keyboard == null && !inInstructions && experiment != null) {
+                    // KeyEvent#getWhen only has millisecond resolution
+                    metrics.getKeyDispatchDelay().record((System.currentTimeMillis() - e.getWhen()) * 1000000L);
+                    metrics.getKeyEvents().increment();
+                    experiment.validateKeyPress(e);
+                }
             }
 
             @Override
             public void keyReleased(KeyEvent e) {
-                if (!inInstructions && experiment != null) {
-                    experiment.validateKeyPress(e);
-                }
+
             }
         });
     }
 
-    public static void main(String[] args) {
-        System.out.println("Starting TaskLoadCognitive UI");
+    /**
+     * Starts reading key presses from the evdev device or replay recording, if the session has one.
+     * Must be called before {@link #launch()}, the session uses AWT key events if it is not.
+     */
+    void openKeyboard() throws IOException {
+        if (keyboardDevice == null && replayRecording == null) {
+            return;
+        }
 
-        final Application application = new Application();
+        if (replayRecording != null) {
+            keyboard = new EvdevKeyboard(
+                    EvdevReplay.replay(Paths.get(replayRecording), EvdevKeyboard.NATIVE_EVENT_SIZE),
+                    EvdevKeyboard.NATIVE_EVENT_SIZE,
+                    this::onKeyboardPress);
+        } else {
+            keyboard = EvdevKeyboard.open(keyboardDevice, this::onKeyboardPress);
+        }
+        keyboard.start();
+        LOGGER.info(String.format("Reading key presses from %s",
+                replayRecording != null ? replayRecording : keyboardDevice));
+    }
+
+    // Invoked on the evdev reader thread
+    private void onKeyboardPress(final int keyCode, final long whenMillis) {
+        if (keyCode == KeyEvent.VK_SPACE) {
+            final CountDownLatch latch = spaceLatch;
+            if (latch != null) {
+                latch.countDown();
+            }
+            // The instruction screens are only ever changed on the EDT
+            SwingUtilities.invokeLater(() -> {
+                acknowledgePreExperimentInstructions();
+                showNextInstruction();
+            });
+        }
 
+        if (!inInstructions && experiment != null) {
+            metrics.getKeyDispatchDelay().record((System.currentTimeMillis() - whenMillis) * 1000000L);
+            metrics.getKeyEvents().increment();
+            experiment.validateKeyPress(keyCode, whenMillis);
+        }
+    }
+
+    void launch() {
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                application.initUI();
-                application.initNumberImage();
-                application.initBackground();
-                application.initMenu();
+                initUI();
+                initStimulusPanel();
+                initBackground();
+                initMenu();
             }
         });
+    }
+
+    /**
+     * Opens the session window and runs the whole protocol straight away as participant uid, without
+     * asking anything and without waiting on the instruction screens, then calls whenFinished on the
+     * experiment thread. Used to load a host with sessions that nobody sits at.
+     */
+    void launchUnattended(final String uid, final Runnable whenFinished) {
+        if (protocol == null) {
+            throw new IllegalStateException("An unattended session needs a protocol");
+        }
+        whenUnattendedFinished = whenFinished;
+        launch();
+        SwingUtilities.invokeLater(() -> {
+            this.uid = uid;
+            level = protocol.getFirstLevel();
+            isPracticeMode = JOptionPane.NO_OPTION;
+            LOGGER.info(String.format("UID=%s", uid));
+            LOGGER.info(String.format("Level=%s", level.getName()));
+            LOGGER.info(String.format("Protocol=%s", protocol.getName()));
+            mainFrame.getContentPane().removeAll();
+            mainFrame.getContentPane().setLayout(new GridLayout(1, 1));
+            startExperiment(uid, level);
+        });
+    }
 
+    public static void main(String[] args) {
+        System.out.println("Starting TaskLoadCognitive UI");
+
+        final Application application = new Application();
+        if (args.length > 0) {
+            // Validate the protocol up front so a broken file never reaches a participant
+            try {
+                application.protocol = Protocol.load(new File(args[0]));
+            } catch (final IOException | ProtocolException e) {
+                System.err.println("Failed to load protocol " + args[0] + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        try {
+            application.openKeyboard();
+        } catch (final IOException e) {
+            LOGGER.warning("Failed to open evdev keyboard, falling back to AWT key events: " + e.getMessage());
+        }
+        application.launch();
     }
 }
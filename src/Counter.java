@@ -0,0 +1,29 @@
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements CounterMBean {
+    private final String name;
+    private final LongAdder count;
+
+    public Counter(final String name) {
+        this.name = name;
+        this.count = new LongAdder();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+    }
+}
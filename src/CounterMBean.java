@@ -0,0 +1,5 @@
+public interface CounterMBean {
+    long getCount();
+
+    void reset();
+}
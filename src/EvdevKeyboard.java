@@ -0,0 +1,146 @@
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Reads key-down events straight from a Linux evdev device such as /dev/input/event3, bypassing
+ * X11 and the AWT event queue. Each press is stamped with the kernel's timestamp for the event,
+ * which evdev reports in CLOCK_REALTIME and so compares directly with System.currentTimeMillis.
+ *
+ * The reader works on any channel carrying struct input_event records, so a stream recorded with
+ * "cat /dev/input/eventN > keys.bin" can be fed back through a file or a named pipe, see
+ * {@link EvdevReplay}.
+ */
+public class EvdevKeyboard {
+    private static final Logger LOGGER = Logger.getLogger(EvdevKeyboard.class.getName());
+    // struct input_event is a struct timeval followed by __u16 type, __u16 code and __s32 value
+    public static final int EVENT_SIZE_64_BIT = 24;
+    public static final int EVENT_SIZE_32_BIT = 16;
+    public static final int NATIVE_EVENT_SIZE =
+            "32".equals(System.getProperty("sun.arch.data.model")) ? EVENT_SIZE_32_BIT : EVENT_SIZE_64_BIT;
+    private static final int EV_KEY = 1;
+    private static final int KEY_DOWN = 1;
+    private static final int EVENTS_PER_READ = 64;
+
+    private static final Map<Integer, Integer> KEY_CODES = new HashMap<Integer, Integer>() {{
+        put(1, KeyEvent.VK_ESCAPE);
+        put(28, KeyEvent.VK_ENTER);
+        put(57, KeyEvent.VK_SPACE);
+        final int[] digits = {KeyEvent.VK_1, KeyEvent.VK_2, KeyEvent.VK_3, KeyEvent.VK_4, KeyEvent.VK_5,
+                KeyEvent.VK_6, KeyEvent.VK_7, KeyEvent.VK_8, KeyEvent.VK_9, KeyEvent.VK_0};
+        for (int i = 0; i < digits.length; i++) {
+            put(2 + i, digits[i]);
+        }
+        final String rows = "QWERTYUIOP" + "ASDFGHJKL" + "ZXCVBNM";
+        final int[] rowStarts = {16, 30, 44};
+        final int[] rowLengths = {10, 9, 7};
+        int letter = 0;
+        for (int row = 0; row < rowStarts.length; row++) {
+            for (int i = 0; i < rowLengths[row]; i++) {
+                // VK_A to VK_Z are the ASCII capitals
+                put(rowStarts[row] + i, (int) rows.charAt(letter++));
+            }
+        }
+    }};
+
+    private final ReadableByteChannel channel;
+    private final int eventSize;
+    private final KeyPressListener listener;
+    private final Thread readerThread;
+    private volatile boolean running;
+
+    public EvdevKeyboard(final ReadableByteChannel channel, final int eventSize, final KeyPressListener listener) {
+        if (eventSize != EVENT_SIZE_64_BIT && eventSize != EVENT_SIZE_32_BIT) {
+            throw new IllegalArgumentException("Unsupported input_event size " + eventSize);
+        }
+        this.channel = channel;
+        this.eventSize = eventSize;
+        this.listener = listener;
+        this.readerThread = new Thread(this::readEvents, "evdev-reader");
+        this.readerThread.setDaemon(true);
+        this.running = false;
+    }
+
+    /**
+     * Opens an evdev device or a recording of one, throwing if it cannot be read, for example
+     * because the user is not in the input group.
+     */
+    public static EvdevKeyboard open(final String path, final KeyPressListener listener) throws IOException {
+        return new EvdevKeyboard(FileChannel.open(Paths.get(path), StandardOpenOption.READ), NATIVE_EVENT_SIZE, listener);
+    }
+
+    public void start() {
+        running = true;
+        readerThread.start();
+    }
+
+    public void close() {
+        running = false;
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            LOGGER.warning("Failed to close evdev channel: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Waits for the reader to reach the end of its stream, which only happens for recordings and pipes.
+     */
+    public void awaitEnd() throws InterruptedException {
+        readerThread.join();
+    }
+
+    private void readEvents() {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(eventSize * EVENTS_PER_READ).order(ByteOrder.nativeOrder());
+        try {
+            while (running) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+
+                buffer.flip();
+                while (buffer.remaining() >= eventSize) {
+                    decodeEvent(buffer);
+                }
+                buffer.compact();
+            }
+        } catch (final AsynchronousCloseException e) {
+            // Closed by close(), nothing to report
+        } catch (final IOException e) {
+            LOGGER.severe("Failed to read evdev events: " + e.getMessage());
+        }
+        running = false;
+    }
+
+    private void decodeEvent(final ByteBuffer buffer) {
+        final long seconds;
+        final long micros;
+        if (eventSize == EVENT_SIZE_64_BIT) {
+            seconds = buffer.getLong();
+            micros = buffer.getLong();
+        } else {
+            seconds = buffer.getInt() & 0xFFFFFFFFL;
+            micros = buffer.getInt();
+        }
+        final int type = buffer.getShort() & 0xFFFF;
+        final int code = buffer.getShort() & 0xFFFF;
+        final int value = buffer.getInt();
+
+        // Only key-down events count, auto-repeat (2) and release (0) are ignored
+        if (type != EV_KEY || value != KEY_DOWN) {
+            return;
+        }
+
+        final Integer keyCode = KEY_CODES.get(code);
+        listener.keyPressed(keyCode == null ? KeyEvent.VK_UNDEFINED : keyCode, seconds * 1000 + micros / 1000);
+    }
+}
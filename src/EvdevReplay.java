@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Replays a recorded evdev stream as if it were coming from a live device, so the evdev input
+ * path can be exercised without a keyboard attached. Events are paced with their recorded
+ * spacing and their timestamps are moved to the time of the replay.
+ *
+ * Record with "cat /dev/input/eventN > keys.bin", then run "EvdevReplay keys.bin" to print the
+ * decoded presses and how long each took to reach the listener. Setting the taskload.evdev.replay
+ * system property to a recording makes {@link Application} read its input from the replay.
+ */
+public class EvdevReplay {
+    private static final Logger LOGGER = Logger.getLogger(EvdevReplay.class.getName());
+
+    /**
+     * Starts replaying the recording and returns the channel the rebased events come out of.
+     */
+    public static ReadableByteChannel replay(final Path recording, final int eventSize) throws IOException {
+        final FileChannel source = FileChannel.open(recording, StandardOpenOption.READ);
+        final Pipe pipe = Pipe.open();
+        final Thread writer = new Thread(() -> pump(source, pipe.sink(), eventSize), "evdev-replay");
+        writer.setDaemon(true);
+        writer.start();
+        return pipe.source();
+    }
+
+    private static void pump(final FileChannel source, final Pipe.SinkChannel sink, final int eventSize) {
+        final ByteBuffer event = ByteBuffer.allocate(eventSize).order(ByteOrder.nativeOrder());
+        final long replayStartMicros = System.currentTimeMillis() * 1000;
+        final long replayStartNanos = System.nanoTime();
+        long firstEventMicros = -1;
+
+        try {
+            while (source.read(event) >= 0) {
+                if (event.hasRemaining()) {
+                    continue;
+                }
+
+                final long recordedMicros = eventSize == EvdevKeyboard.EVENT_SIZE_64_BIT
+                        ? event.getLong(0) * 1000000 + event.getLong(8)
+                        : (event.getInt(0) & 0xFFFFFFFFL) * 1000000 + event.getInt(4);
+                if (firstEventMicros < 0) {
+                    firstEventMicros = recordedMicros;
+                }
+                final long offsetMicros = recordedMicros - firstEventMicros;
+
+                long remaining;
+                final long dueNanos = replayStartNanos + TimeUnit.MICROSECONDS.toNanos(offsetMicros);
+                while ((remaining = dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+
+                final long rebasedMicros = replayStartMicros + offsetMicros;
+                if (eventSize == EvdevKeyboard.EVENT_SIZE_64_BIT) {
+                    event.putLong(0, rebasedMicros / 1000000);
+                    event.putLong(8, rebasedMicros % 1000000);
+                } else {
+                    event.putInt(0, (int) (rebasedMicros / 1000000));
+                    event.putInt(4, (int) (rebasedMicros % 1000000));
+                }
+
+                event.flip();
+                while (event.hasRemaining()) {
+                    sink.write(event);
+                }
+                event.clear();
+            }
+        } catch (final IOException e) {
+            LOGGER.severe("Replay failed: " + e.getMessage());
+        } finally {
+            try {
+                source.close();
+                sink.close();
+            } catch (final IOException e) {
+                LOGGER.warning("Failed to close replay: " + e.getMessage());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: EvdevReplay <recording> [eventSize]");
+            System.exit(1);
+        }
+
+        final int eventSize = args.length > 1 ? Integer.parseInt(args[1]) : EvdevKeyboard.NATIVE_EVENT_SIZE;
+        final LatencyHistogram delay = new LatencyHistogram("evdevDeliveryDelay");
+        final EvdevKeyboard keyboard = new EvdevKeyboard(replay(Paths.get(args[0]), eventSize), eventSize,
+                (keyCode, whenMillis) -> {
+                    final long delayMillis = System.currentTimeMillis() - whenMillis;
+                    delay.record(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+                    System.out.println(String.format("keyCode=%d when=%d delay=%dms", keyCode, whenMillis, delayMillis));
+                });
+        keyboard.start();
+        keyboard.awaitEnd();
+        System.out.println(delay.summary());
+    }
+}
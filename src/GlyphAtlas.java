@@ -0,0 +1,121 @@
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.logging.Logger;
+
+/**
+ * The digits 0 to 9 rasterized from a font into one opaque image, sized for a single output
+ * resolution. Drawing a digit copies its cell out of the atlas pixel for pixel, with no scaling
+ * and no text layout, so a stimulus is one sub-image blit.
+ *
+ * The background colour is baked into the atlas, so it can only be drawn onto that colour.
+ */
+public class GlyphAtlas {
+    private static final Logger LOGGER = Logger.getLogger(GlyphAtlas.class.getName());
+    private static final String DIGITS = "0123456789";
+    // Font size used to measure the glyph outlines before scaling to the target height
+    private static final float REFERENCE_FONT_SIZE = 100f;
+    // Background pixels kept around each glyph so antialiased edges are not clipped
+    private static final int CELL_PADDING = 2;
+
+    private final GraphicsDevice device;
+    private final int outputWidth;
+    private final int outputHeight;
+    private final BufferedImage image;
+    private final Rectangle[] cells;
+
+    /**
+     * @param font font to take the glyph outlines from, its size is ignored
+     * @param digitHeight height of the tallest digit in output pixels
+     * @param configuration configuration of the screen the atlas is drawn to, or null for a plain image
+     */
+    public GlyphAtlas(final Font font,
+                      final int digitHeight,
+                      final Color foreground,
+                      final Color background,
+                      final GraphicsConfiguration configuration,
+                      final int outputWidth,
+                      final int outputHeight) {
+        this.device = configuration == null ? null : configuration.getDevice();
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+        this.cells = new Rectangle[DIGITS.length()];
+
+        final long startNanos = System.nanoTime();
+        final FontRenderContext renderContext = new FontRenderContext(null, true, true);
+        final Font referenceFont = font.deriveFont(REFERENCE_FONT_SIZE);
+        final float referenceHeight = (float) referenceFont.createGlyphVector(renderContext, DIGITS)
+                .getVisualBounds().getHeight();
+        final Font sizedFont = font.deriveFont(REFERENCE_FONT_SIZE * Math.max(1, digitHeight) / referenceHeight);
+
+        final GlyphVector[] glyphs = new GlyphVector[DIGITS.length()];
+        final Rectangle[] bounds = new Rectangle[DIGITS.length()];
+        int atlasWidth = 0;
+        int atlasHeight = 0;
+        for (int i = 0; i < DIGITS.length(); i++) {
+            glyphs[i] = sizedFont.createGlyphVector(renderContext, DIGITS.substring(i, i + 1));
+            bounds[i] = glyphs[i].getPixelBounds(renderContext, 0, 0);
+            atlasWidth += bounds[i].width + 2 * CELL_PADDING;
+            atlasHeight = Math.max(atlasHeight, bounds[i].height + 2 * CELL_PADDING);
+        }
+
+        image = configuration != null
+                ? configuration.createCompatibleImage(atlasWidth, atlasHeight, Transparency.OPAQUE)
+                : new BufferedImage(atlasWidth, atlasHeight, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setColor(background);
+        graphics.fillRect(0, 0, atlasWidth, atlasHeight);
+        graphics.setColor(foreground);
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+        int x = 0;
+        for (int i = 0; i < DIGITS.length(); i++) {
+            final Rectangle cell = new Rectangle(x, 0,
+                    bounds[i].width + 2 * CELL_PADDING, bounds[i].height + 2 * CELL_PADDING);
+            // Shift the glyph so its pixel bounds start at the padded corner of its cell
+            graphics.drawGlyphVector(glyphs[i],
+                    cell.x + CELL_PADDING - bounds[i].x, cell.y + CELL_PADDING - bounds[i].y);
+            cells[i] = cell;
+            x += cell.width;
+        }
+        graphics.dispose();
+
+        LOGGER.info(String.format("Rasterized glyph atlas for %dx%d, digitHeight=%d, atlas=%dx%d, bytes=%d, took=%.2fms",
+                outputWidth, outputHeight, digitHeight, atlasWidth, atlasHeight, getSizeInBytes(),
+                (System.nanoTime() - startNanos) / 1e6));
+    }
+
+    /**
+     * Whether the atlas was rasterized for this screen and output size.
+     */
+    public boolean isFor(final GraphicsConfiguration configuration, final int width, final int height) {
+        final GraphicsDevice device = configuration == null ? null : configuration.getDevice();
+        return this.device == device && outputWidth == width && outputHeight == height;
+    }
+
+    /**
+     * Draws a single digit with its visual centre at (centerX, centerY), in the device space of the
+     * graphics, which must not be scaled.
+     */
+    public void drawDigitCentered(final Graphics graphics, final int digit, final int centerX, final int centerY) {
+        if (digit < 0 || digit >= cells.length) {
+            throw new RuntimeException("Glyph atlas has no digit " + digit);
+        }
+        final Rectangle cell = cells[digit];
+        final int x = centerX - cell.width / 2;
+        final int y = centerY - cell.height / 2;
+        graphics.drawImage(image,
+                x, y, x + cell.width, y + cell.height,
+                cell.x, cell.y, cell.x + cell.width, cell.y + cell.height,
+                null);
+    }
+
+    public long getSizeInBytes() {
+        final DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
@@ -2,25 +2,34 @@ import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ImagePanel extends JPanel {
+    // Decoded images are shared read-only between every panel, and so between sessions in the same JVM
+    private static final Map<String, BufferedImage> IMAGE_CACHE = new ConcurrentHashMap<>();
+
     private BufferedImage image;
 
     public ImagePanel(final String imagePath) {
         super();
 
+        image = IMAGE_CACHE.computeIfAbsent(imagePath, ImagePanel::readImage);
+    }
+
+    private static BufferedImage readImage(final String imagePath) {
         try {
-            final URL url = getClass().getResource(imagePath);
+            final URL url = ImagePanel.class.getResource(imagePath);
             if (url != null) {
-                image = ImageIO.read(url);
+                return ImageIO.read(url);
             } else {
                 throw new RuntimeException("Image URL is null for path=" + imagePath);
             }
         } catch (final IOException e) {
             System.err.println(e.getMessage());
+            return null;
         }
     }
 
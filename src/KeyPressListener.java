@@ -0,0 +1,7 @@
+public interface KeyPressListener {
+    /**
+     * @param keyCode the AWT key code of the key pressed, KeyEvent.VK_UNDEFINED if it has none
+     * @param whenMillis when the key went down, in System.currentTimeMillis time
+     */
+    void keyPressed(int keyCode, long whenMillis);
+}
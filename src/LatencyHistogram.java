@@ -0,0 +1,230 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ * Values are recorded in nanoseconds with a relative error of at most 1/128, and the
+ * memory footprint is fixed at construction regardless of how many values are recorded.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Values of 2^40ns (about 18 minutes) and above are clamped into the last bucket
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final String name;
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount;
+    private final LongAdder totalNanos;
+    private final AtomicLong minNanos;
+    private final AtomicLong maxNanos;
+
+    public LatencyHistogram(final String name) {
+        this.name = name;
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalCount = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.minNanos = new AtomicLong(Long.MAX_VALUE);
+        this.maxNanos = new AtomicLong(0);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void record(final long nanos) {
+        final long value = Math.min(Math.max(nanos, 0), MAX_TRACKABLE_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        minNanos.accumulateAndGet(value, Math::min);
+        maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getValueAtPercentile(final double percentile) {
+        final long count = totalCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Copies the current state, so that what is recorded from here on can be summarized with
+     * {@link #summaryBetween(long[], long[])} without resetting the histogram under its JMX readers.
+     */
+    public long[] snapshot() {
+        final long[] snapshot = new long[BUCKET_COUNT + 2];
+        // Totals first, so a value recorded while copying never shows up in the buckets but not the totals
+        snapshot[BUCKET_COUNT] = totalCount.sum();
+        snapshot[BUCKET_COUNT + 1] = totalNanos.sum();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Summarizes the values recorded between two snapshots. Min, max and percentiles are read
+     * from the buckets, so they carry the histogram's relative error of 1/128.
+     */
+    public String summaryBetween(final long[] snapshot, final long[] current) {
+        // The histogram was reset over JMX in between, so everything in it is new
+        final boolean wasReset = current[BUCKET_COUNT] < snapshot[BUCKET_COUNT];
+        final long[] delta = new long[BUCKET_COUNT];
+        int lowest = -1;
+        int highest = -1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            delta[i] = Math.max(0, current[i] - (wasReset ? 0 : snapshot[i]));
+            if (delta[i] > 0) {
+                lowest = lowest < 0 ? i : lowest;
+                highest = i;
+            }
+        }
+        final long count = current[BUCKET_COUNT] - (wasReset ? 0 : snapshot[BUCKET_COUNT]);
+        final long nanos = current[BUCKET_COUNT + 1] - (wasReset ? 0 : snapshot[BUCKET_COUNT + 1]);
+
+        return String.format("%s: count=%d mean=%.3fms min=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                name,
+                count,
+                count == 0 ? 0 : nanos / (double) count / NANOS_PER_MILLI,
+                lowest < 0 ? 0 : lowestValueAt(lowest) / NANOS_PER_MILLI,
+                valueAtPercentile(delta, 50) / NANOS_PER_MILLI,
+                valueAtPercentile(delta, 90) / NANOS_PER_MILLI,
+                valueAtPercentile(delta, 99) / NANOS_PER_MILLI,
+                valueAtPercentile(delta, 99.9) / NANOS_PER_MILLI,
+                highest < 0 ? 0 : highestValueAt(highest) / NANOS_PER_MILLI);
+    }
+
+    private static long valueAtPercentile(final long[] bucketCounts, final double percentile) {
+        long count = 0;
+        for (final long bucketCount : bucketCounts) {
+            count += bucketCount;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= target) {
+                return highestValueAt(i);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        final long count = totalCount.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMinMillis() {
+        final long min = minNanos.get();
+        return min == Long.MAX_VALUE ? 0 : min / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return getValueAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return getValueAtPercentile(90) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+        minNanos.set(Long.MAX_VALUE);
+        maxNanos.set(0);
+    }
+
+    public String summary() {
+        return String.format("%s: count=%d mean=%.3fms min=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                name,
+                getCount(),
+                getMeanMillis(),
+                getMinMillis(),
+                getP50Millis(),
+                getP90Millis(),
+                getP99Millis(),
+                getP999Millis(),
+                getMaxMillis());
+    }
+
+    private static int indexOf(final long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        // Keep the top SUB_BUCKET_BITS + 1 bits of the value, so each power of two is split into SUB_BUCKET_COUNT buckets
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    private static long lowestValueAt(final int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        return (index - (long) shift * SUB_BUCKET_COUNT) << shift;
+    }
+
+    private static long highestValueAt(final int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long subBucket = index - shift * SUB_BUCKET_COUNT;
+        return (subBucket << shift) + (1L << shift) - 1;
+    }
+}
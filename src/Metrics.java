@@ -0,0 +1,180 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Latency histograms and counters for one session's experiment pipeline. Every metric is
+ * published as an MBean under the "TaskLoadCognitive" JMX domain, keyed by session name, and
+ * accumulates for the life of the session so a monitor can track it across runs. The end of
+ * each run logs a summary of just that run.
+ */
+public final class Metrics {
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+    private static final String JMX_DOMAIN = "TaskLoadCognitive";
+
+    private final String session;
+    // Time from the OS key event to validateKeyPress running on the EDT
+    private final LatencyHistogram keyDispatchDelay;
+    // Time from displayTask being called to the stimulus panel being painted
+    private final LatencyHistogram displayToPaint;
+    private final LatencyHistogram clearScreen;
+    // Time to flush and close the CSV at the end of a run
+    private final LatencyHistogram writeInputCSV;
+    // Time to append one trial's row to the buffered CSV
+    private final LatencyHistogram appendInputCSV;
+    // Time between when a trial was scheduled to be shown and when displayTask was called
+    private final LatencyHistogram trialOnsetLateness;
+
+    private final Counter keyEvents;
+    private final Counter tasksDisplayed;
+    private final Counter csvWriteFailures;
+
+    private final List<LatencyHistogram> histograms;
+    private final List<Counter> counters;
+    private final List<ObjectName> registeredNames;
+    // State at the last summary, so each summary only covers its own run
+    private final Map<LatencyHistogram, long[]> histogramSnapshots;
+    private final Map<Counter, Long> counterSnapshots;
+
+    public Metrics(final String session) {
+        this.session = session;
+        this.keyDispatchDelay = new LatencyHistogram("keyDispatchDelay");
+        this.displayToPaint = new LatencyHistogram("displayToPaint");
+        this.clearScreen = new LatencyHistogram("clearScreen");
+        this.writeInputCSV = new LatencyHistogram("writeInputCSV");
+        this.appendInputCSV = new LatencyHistogram("appendInputCSV");
+        this.trialOnsetLateness = new LatencyHistogram("trialOnsetLateness");
+        this.keyEvents = new Counter("keyEvents");
+        this.tasksDisplayed = new Counter("tasksDisplayed");
+        this.csvWriteFailures = new Counter("csvWriteFailures");
+
+        this.histograms = new ArrayList<>();
+        histograms.add(keyDispatchDelay);
+        histograms.add(displayToPaint);
+        histograms.add(clearScreen);
+        histograms.add(writeInputCSV);
+        histograms.add(appendInputCSV);
+        histograms.add(trialOnsetLateness);
+
+        this.counters = new ArrayList<>();
+        counters.add(keyEvents);
+        counters.add(tasksDisplayed);
+        counters.add(csvWriteFailures);
+
+        this.histogramSnapshots = new HashMap<>();
+        histograms.forEach(histogram -> histogramSnapshots.put(histogram, histogram.snapshot()));
+        this.counterSnapshots = new HashMap<>();
+        counters.forEach(counter -> counterSnapshots.put(counter, counter.getCount()));
+
+        this.registeredNames = new ArrayList<>();
+        register();
+    }
+
+    private void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (final LatencyHistogram histogram : histograms) {
+                final ObjectName name = objectName("Latency", histogram.getName());
+                server.registerMBean(histogram, name);
+                registeredNames.add(name);
+            }
+            for (final Counter counter : counters) {
+                final ObjectName name = objectName("Counter", counter.getName());
+                server.registerMBean(counter, name);
+                registeredNames.add(name);
+            }
+        } catch (final JMException e) {
+            LOGGER.warning("Failed to register metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    private ObjectName objectName(final String type, final String name) throws JMException {
+        return new ObjectName(String.format("%s:type=%s,session=%s,name=%s",
+                JMX_DOMAIN, type, ObjectName.quote(session), name));
+    }
+
+    /**
+     * Unregisters this session's MBeans, once the session's window has been closed.
+     */
+    public void close() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final ObjectName name : registeredNames) {
+            try {
+                server.unregisterMBean(name);
+            } catch (final JMException e) {
+                LOGGER.warning("Failed to unregister " + name + ": " + e.getMessage());
+            }
+        }
+        registeredNames.clear();
+    }
+
+    /**
+     * Logs a summary of every metric recorded since the last summary. The published values are
+     * left as they are.
+     */
+    public synchronized void dumpSessionSummary(final String uid) {
+        final StringBuilder summaryBuilder = new StringBuilder();
+        summaryBuilder.append(String.format("Session metrics for session=%s uid=%s", session, uid));
+        for (final LatencyHistogram histogram : histograms) {
+            final long[] snapshot = histogram.snapshot();
+            summaryBuilder.append("\n  ");
+            summaryBuilder.append(histogram.summaryBetween(histogramSnapshots.get(histogram), snapshot));
+            histogramSnapshots.put(histogram, snapshot);
+        }
+        for (final Counter counter : counters) {
+            final long count = counter.getCount();
+            // A counter reset over JMX since the last summary counts from zero
+            final long previous = count < counterSnapshots.get(counter) ? 0 : counterSnapshots.get(counter);
+            summaryBuilder.append("\n  ");
+            summaryBuilder.append(String.format("%s: count=%d", counter.getName(), count - previous));
+            counterSnapshots.put(counter, count);
+        }
+        LOGGER.info(summaryBuilder.toString());
+    }
+
+    public String getSession() {
+        return this.session;
+    }
+
+    public LatencyHistogram getKeyDispatchDelay() {
+        return this.keyDispatchDelay;
+    }
+
+    public LatencyHistogram getDisplayToPaint() {
+        return this.displayToPaint;
+    }
+
+    public LatencyHistogram getClearScreen() {
+        return this.clearScreen;
+    }
+
+    public LatencyHistogram getWriteInputCSV() {
+        return this.writeInputCSV;
+    }
+
+    public LatencyHistogram getAppendInputCSV() {
+        return this.appendInputCSV;
+    }
+
+    public LatencyHistogram getTrialOnsetLateness() {
+        return this.trialOnsetLateness;
+    }
+
+    public Counter getKeyEvents() {
+        return this.keyEvents;
+    }
+
+    public Counter getTasksDisplayed() {
+        return this.tasksDisplayed;
+    }
+
+    public Counter getCsvWriteFailures() {
+        return this.csvWriteFailures;
+    }
+}
@@ -0,0 +1,138 @@
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+/**
+ * Runs several independent participant sessions in one JVM, one window per session, with the
+ * windows assigned to the attached screens round robin. Decoded images and stimulus glyph atlases
+ * are shared between the sessions, everything else is owned by each session's {@link Application},
+ * including its experiment thread pool and its metrics MBeans. Compare the per-session
+ * trialOnsetLateness summaries as the number of sessions grows to check that scheduling stays
+ * within bounds.
+ *
+ * Usage: MultiSessionHost [numberOfSessions] [protocolFile] [--unattended [uidPrefix]]
+ *
+ * Each session reads its own keyboard through evdev, from the taskload.evdev system property set
+ * to a comma separated list of devices, one per session in order, or replays recorded input from
+ * the taskload.evdev.replay property, a comma separated list of recordings handed out to the
+ * sessions in turn. AWT only delivers key events to the one focused window in the JVM, so with
+ * more than one session every session needs its own device or replay, and the host refuses to
+ * start otherwise, or if any of them cannot be opened.
+ *
+ * With --unattended every session runs the protocol straight away as participant uidPrefix-N,
+ * skipping the dialogs and instruction screens, and once all of them have finished the host prints
+ * each session's trialOnsetLateness and exits. Run it for N = 1, 2, 4, ... to see how the onset
+ * lateness grows with the number of sessions.
+ */
+public class MultiSessionHost {
+    private static final Logger LOGGER = Logger.getLogger(MultiSessionHost.class.getName());
+    private static final int DEFAULT_NUMBER_OF_SESSIONS = 2;
+    private static final String UNATTENDED_OPTION = "--unattended";
+    private static final String DEFAULT_UID_PREFIX = "unattended";
+
+    public static void main(String[] args) throws InterruptedException {
+        int numberOfSessions = DEFAULT_NUMBER_OF_SESSIONS;
+        Protocol protocol = null;
+        boolean unattended = false;
+        String uidPrefix = DEFAULT_UID_PREFIX;
+        try {
+            if (args.length > 0) {
+                numberOfSessions = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1) {
+                protocol = Protocol.load(new File(args[1]));
+            }
+            if (args.length > 2) {
+                if (!UNATTENDED_OPTION.equals(args[2])) {
+                    System.err.println("Unknown option " + args[2]);
+                    System.exit(1);
+                }
+                unattended = true;
+                if (args.length > 3) {
+                    uidPrefix = args[3];
+                }
+            }
+        } catch (final NumberFormatException e) {
+            System.err.println("Number of sessions is not a number: " + args[0]);
+            System.exit(1);
+        } catch (final IOException | ProtocolException e) {
+            System.err.println("Failed to load protocol " + args[1] + ": " + e.getMessage());
+            System.exit(1);
+        }
+        if (numberOfSessions < 1) {
+            System.err.println("Number of sessions must be positive");
+            System.exit(1);
+        }
+        if (unattended && protocol == null) {
+            System.err.println("Unattended sessions need a protocol file to take their level and blocks from");
+            System.exit(1);
+        }
+
+        final GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+        LOGGER.info(String.format("Starting %d sessions on %d screens", numberOfSessions, screens.length));
+
+        final String[] keyboardDevices = splitProperty(Application.EVDEV_DEVICE_PROPERTY);
+        final String[] replayRecordings = splitProperty(Application.EVDEV_REPLAY_PROPERTY);
+        if (numberOfSessions > 1 && replayRecordings.length == 0 && keyboardDevices.length < numberOfSessions) {
+            System.err.println(String.format(
+                    "%d sessions need %d keyboards, set -D%s to a comma separated list of evdev devices, found %d,"
+                            + " or -D%s to recordings to replay",
+                    numberOfSessions, numberOfSessions, Application.EVDEV_DEVICE_PROPERTY, keyboardDevices.length,
+                    Application.EVDEV_REPLAY_PROPERTY));
+            System.exit(1);
+        }
+
+        final List<Application> applications = new ArrayList<>();
+        for (int i = 0; i < numberOfSessions; i++) {
+            final GraphicsConfiguration screen = screens[i % screens.length].getDefaultConfiguration();
+            final String replayRecording = replayRecordings.length > 0
+                    ? replayRecordings[i % replayRecordings.length] : null;
+            final String keyboardDevice = replayRecording == null && i < keyboardDevices.length
+                    ? keyboardDevices[i] : null;
+            final Application application = new Application("session-" + (i + 1), screen, protocol, false,
+                    keyboardDevice, replayRecording);
+            // A session silently left on AWT input would never see a key press, so open them all before any window
+            try {
+                application.openKeyboard();
+            } catch (final IOException e) {
+                System.err.println(String.format("Failed to open the keyboard of session-%d (%s): %s",
+                        i + 1, replayRecording != null ? replayRecording : keyboardDevice, e.getMessage()));
+                System.exit(1);
+            }
+            applications.add(application);
+        }
+
+        if (!unattended) {
+            applications.forEach(Application::launch);
+            return;
+        }
+
+        final CountDownLatch finished = new CountDownLatch(numberOfSessions);
+        for (int i = 0; i < numberOfSessions; i++) {
+            applications.get(i).launchUnattended(uidPrefix + "-" + (i + 1), finished::countDown);
+        }
+        finished.await();
+
+        for (final Application application : applications) {
+            System.out.println(String.format("sessions=%d session=%s %s", numberOfSessions,
+                    application.getMetrics().getSession(), application.getMetrics().getTrialOnsetLateness().summary()));
+        }
+        System.exit(0);
+    }
+
+    private static String[] splitProperty(final String property) {
+        final String value = System.getProperty(property);
+        if (value == null || value.trim().isEmpty()) {
+            return new String[0];
+        }
+        final String[] values = value.split(",");
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].trim();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A session description made of trial blocks and rest breaks. Protocol files are line based,
+ * blank lines and lines starting with '#' are ignored:
+ *
+ * <pre>
+ * name = Two hour mixed
+ * seed = 20240501
+ * trials level=Easy count=100 display=500 pause=1600
+ * rest duration=60000
+ * trials level=Difficult count=100000 display=500 pause=1600 maxDuration=3600000
+ * trials level=Medium count=400 targetRate=0.15 lureRate=0.1 maxRun=16
+ * </pre>
+ *
+ * Durations are in milliseconds. targetRate and lureRate are the shares of a block's trials that
+ * are targets and lures, and maxRun the longest run of consecutive targets or non-targets; they
+ * default to the level's usual values. The optional seed fixes the generated numbers, so that a
+ * session can be reproduced; without it every session draws a fresh seed. A protocol is fully
+ * validated when it is parsed, so a session never starts with a protocol that cannot be run to
+ * completion.
+ */
+public class Protocol {
+    public static final long DEFAULT_DISPLAY_MILLIS = 500;
+    public static final long DEFAULT_PAUSE_MILLIS = 1600;
+    private static final int DEFAULT_NUMBER_OF_TRIALS = 250;
+    private static final long FOUR_MINUTES_IN_MILLIS = 4 * 60 * 1000;
+    private static final long ONE_MINUTES_IN_MILLIS = 60 * 1000;
+
+    private final String name;
+    private final List<ProtocolBlock> blocks;
+    private final Long seed;
+
+    public Protocol(final String name, final List<ProtocolBlock> blocks) {
+        this(name, blocks, null);
+    }
+
+    /**
+     * @param seed seed for the number sequences, or null to draw a fresh one per session
+     */
+    public Protocol(final String name, final List<ProtocolBlock> blocks, final Long seed) {
+        this.name = name;
+        this.blocks = Collections.unmodifiableList(new ArrayList<>(blocks));
+        this.seed = seed;
+    }
+
+    /**
+     * The single block session used when no protocol file is loaded: 250 trials at one level,
+     * capped at one minute in practice mode and four minutes otherwise.
+     */
+    public static Protocol defaultFor(final ExperimentLevel level, final int numOfTrials, final int isPracticeMode) {
+        final long maxDurationMillis = isPracticeMode == 0 ? ONE_MINUTES_IN_MILLIS : FOUR_MINUTES_IN_MILLIS;
+        return new Protocol(level.getName(), Collections.singletonList(ProtocolBlock.trials(
+                level, numOfTrials, DEFAULT_DISPLAY_MILLIS, DEFAULT_PAUSE_MILLIS, maxDurationMillis)));
+    }
+
+    public static Protocol defaultFor(final ExperimentLevel level, final int isPracticeMode) {
+        return defaultFor(level, DEFAULT_NUMBER_OF_TRIALS, isPracticeMode);
+    }
+
+    public static Protocol load(final File file) throws IOException, ProtocolException {
+        try (final Reader reader = new FileReader(file)) {
+            return parse(file.getName(), reader);
+        }
+    }
+
+    public static Protocol parse(final String defaultName, final Reader reader) throws IOException, ProtocolException {
+        final BufferedReader bufferedReader = new BufferedReader(reader);
+        final List<ProtocolBlock> blocks = new ArrayList<>();
+        String name = defaultName;
+        Long seed = null;
+        boolean hasTrials = false;
+        int lineNumber = 0;
+        String line;
+
+        while ((line = bufferedReader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            if (line.matches("name\\s*=.*")) {
+                name = line.substring(line.indexOf('=') + 1).trim();
+                if (name.isEmpty()) {
+                    throw new ProtocolException("Protocol name is empty", lineNumber);
+                }
+                continue;
+            }
+
+            if (line.matches("seed\\s*=.*")) {
+                final String value = line.substring(line.indexOf('=') + 1).trim();
+                try {
+                    seed = Long.parseLong(value);
+                } catch (final NumberFormatException e) {
+                    throw new ProtocolException("Seed is not a number: " + value, lineNumber);
+                }
+                continue;
+            }
+
+            final String[] tokens = line.split("\\s+");
+            final Map<String, String> attributes = parseAttributes(tokens, lineNumber);
+            switch (tokens[0]) {
+                case "trials":
+                    blocks.add(parseTrials(attributes, lineNumber));
+                    hasTrials = true;
+                    break;
+
+                case "rest":
+                    requireOnly(attributes, lineNumber, "duration");
+                    blocks.add(ProtocolBlock.rest(requirePositive(attributes, "duration", lineNumber)));
+                    break;
+
+                default:
+                    throw new ProtocolException("Unknown block type '" + tokens[0] + "'", lineNumber);
+            }
+        }
+
+        if (!hasTrials) {
+            throw new ProtocolException("Protocol has no trials block", lineNumber);
+        }
+
+        return new Protocol(name, blocks, seed);
+    }
+
+    private static ProtocolBlock parseTrials(final Map<String, String> attributes,
+                                             final int lineNumber) throws ProtocolException {
+        requireOnly(attributes, lineNumber, "level", "count", "display", "pause", "maxDuration",
+                "targetRate", "lureRate", "maxRun");
+
+        final String levelName = attributes.get("level");
+        if (levelName == null) {
+            throw new ProtocolException("Missing attribute 'level'", lineNumber);
+        }
+        ExperimentLevel level = null;
+        for (final ExperimentLevel candidate : ExperimentLevel.values()) {
+            if (candidate.getName().equalsIgnoreCase(levelName) || candidate.name().equalsIgnoreCase(levelName)) {
+                level = candidate;
+            }
+        }
+        if (level == null) {
+            throw new ProtocolException("Unknown level '" + levelName + "'", lineNumber);
+        }
+
+        final long count = requirePositive(attributes, "count", lineNumber);
+        if (count > Integer.MAX_VALUE) {
+            throw new ProtocolException("Attribute 'count' is too large", lineNumber);
+        }
+        final long display = attributes.containsKey("display")
+                ? requirePositive(attributes, "display", lineNumber) : DEFAULT_DISPLAY_MILLIS;
+        final long pause = attributes.containsKey("pause")
+                ? requireNonNegative(attributes, "pause", lineNumber) : DEFAULT_PAUSE_MILLIS;
+        final long maxDuration = attributes.containsKey("maxDuration")
+                ? requirePositive(attributes, "maxDuration", lineNumber) : 0;
+        final double targetRate = attributes.containsKey("targetRate")
+                ? requireRate(attributes, "targetRate", lineNumber) : SequenceConstraints.DEFAULT_TARGET_RATE;
+        final double lureRate = attributes.containsKey("lureRate")
+                ? requireRate(attributes, "lureRate", lineNumber) : SequenceConstraints.defaultLureRate(level);
+        final long maxRun = attributes.containsKey("maxRun")
+                ? requirePositive(attributes, "maxRun", lineNumber) : SequenceConstraints.DEFAULT_MAX_RUN;
+        if (maxRun > Integer.MAX_VALUE) {
+            throw new ProtocolException("Attribute 'maxRun' is too large", lineNumber);
+        }
+
+        final ProtocolBlock block = ProtocolBlock.trials(level, (int) count, display, pause, maxDuration,
+                targetRate, lureRate, (int) maxRun);
+        requireSatisfiable(block, lineNumber);
+        return block;
+    }
+
+    /**
+     * Checks that every segment of the block can be generated with its share of targets and lures,
+     * so an impossible quota is reported now instead of in the middle of a session.
+     */
+    private static void requireSatisfiable(final ProtocolBlock block, final int lineNumber) throws ProtocolException {
+        try {
+            for (final SequenceConstraints constraints : TrialSequence.segmentConstraints(block)) {
+                new SequenceGenerator(constraints).generate(1, constraints.getKey().hashCode());
+            }
+        } catch (final IllegalArgumentException | IllegalStateException e) {
+            throw new ProtocolException("The block's rates cannot be met: " + e.getMessage(), lineNumber);
+        }
+    }
+
+    private static Map<String, String> parseAttributes(final String[] tokens,
+                                                       final int lineNumber) throws ProtocolException {
+        final Map<String, String> attributes = new HashMap<>();
+        for (int i = 1; i < tokens.length; i++) {
+            final int separator = tokens[i].indexOf('=');
+            if (separator <= 0 || separator == tokens[i].length() - 1) {
+                throw new ProtocolException("Expected key=value but found '" + tokens[i] + "'", lineNumber);
+            }
+            if (attributes.put(tokens[i].substring(0, separator), tokens[i].substring(separator + 1)) != null) {
+                throw new ProtocolException("Duplicate attribute '" + tokens[i].substring(0, separator) + "'", lineNumber);
+            }
+        }
+        return attributes;
+    }
+
+    private static void requireOnly(final Map<String, String> attributes,
+                                    final int lineNumber,
+                                    final String... allowed) throws ProtocolException {
+        final List<String> allowedKeys = new ArrayList<>();
+        Collections.addAll(allowedKeys, allowed);
+        for (final String key : attributes.keySet()) {
+            if (!allowedKeys.contains(key)) {
+                throw new ProtocolException("Unknown attribute '" + key + "'", lineNumber);
+            }
+        }
+    }
+
+    private static long requireNonNegative(final Map<String, String> attributes,
+                                           final String key,
+                                           final int lineNumber) throws ProtocolException {
+        final String value = attributes.get(key);
+        if (value == null) {
+            throw new ProtocolException("Missing attribute '" + key + "'", lineNumber);
+        }
+        try {
+            final long parsed = Long.parseLong(value);
+            if (parsed < 0) {
+                throw new ProtocolException("Attribute '" + key + "' must not be negative", lineNumber);
+            }
+            return parsed;
+        } catch (final NumberFormatException e) {
+            throw new ProtocolException("Attribute '" + key + "' is not a number: " + value, lineNumber);
+        }
+    }
+
+    private static double requireRate(final Map<String, String> attributes,
+                                      final String key,
+                                      final int lineNumber) throws ProtocolException {
+        final String value = attributes.get(key);
+        try {
+            final double parsed = Double.parseDouble(value);
+            if (!(parsed >= 0 && parsed <= 1)) {
+                throw new ProtocolException("Attribute '" + key + "' must be between 0 and 1", lineNumber);
+            }
+            return parsed;
+        } catch (final NumberFormatException e) {
+            throw new ProtocolException("Attribute '" + key + "' is not a number: " + value, lineNumber);
+        }
+    }
+
+    private static long requirePositive(final Map<String, String> attributes,
+                                        final String key,
+                                        final int lineNumber) throws ProtocolException {
+        final long parsed = requireNonNegative(attributes, key, lineNumber);
+        if (parsed == 0) {
+            throw new ProtocolException("Attribute '" + key + "' must be positive", lineNumber);
+        }
+        return parsed;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Long getSeed() {
+        return this.seed;
+    }
+
+    public List<ProtocolBlock> getBlocks() {
+        return this.blocks;
+    }
+
+    public ExperimentLevel getFirstLevel() {
+        for (final ProtocolBlock block : blocks) {
+            if (!block.isRest()) {
+                return block.getLevel();
+            }
+        }
+        throw new RuntimeException("Protocol has no trials block");
+    }
+
+    public long getTotalTrials() {
+        long total = 0;
+        for (final ProtocolBlock block : blocks) {
+            total += block.getTrials();
+        }
+        return total;
+    }
+}
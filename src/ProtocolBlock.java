@@ -0,0 +1,117 @@
+/**
+ * One step of a {@link Protocol}: either a run of trials at a single level, or a rest break.
+ */
+public class ProtocolBlock {
+    private final ExperimentLevel level;
+    private final int trials;
+    private final long displayMillis;
+    private final long pauseMillis;
+    private final long maxDurationMillis;
+    private final long restMillis;
+    private final double targetRate;
+    private final double lureRate;
+    private final int maxRun;
+
+    private ProtocolBlock(final ExperimentLevel level,
+                          final int trials,
+                          final long displayMillis,
+                          final long pauseMillis,
+                          final long maxDurationMillis,
+                          final long restMillis,
+                          final double targetRate,
+                          final double lureRate,
+                          final int maxRun) {
+        this.level = level;
+        this.trials = trials;
+        this.displayMillis = displayMillis;
+        this.pauseMillis = pauseMillis;
+        this.maxDurationMillis = maxDurationMillis;
+        this.restMillis = restMillis;
+        this.targetRate = targetRate;
+        this.lureRate = lureRate;
+        this.maxRun = maxRun;
+    }
+
+    /**
+     * @param maxDurationMillis cap on the wall-clock length of the block, or 0 for no cap
+     */
+    public static ProtocolBlock trials(final ExperimentLevel level,
+                                       final int trials,
+                                       final long displayMillis,
+                                       final long pauseMillis,
+                                       final long maxDurationMillis) {
+        return trials(level, trials, displayMillis, pauseMillis, maxDurationMillis,
+                SequenceConstraints.DEFAULT_TARGET_RATE, SequenceConstraints.defaultLureRate(level),
+                SequenceConstraints.DEFAULT_MAX_RUN);
+    }
+
+    /**
+     * @param targetRate share of the trials that are targets
+     * @param lureRate share of the trials that are lures
+     * @param maxRun longest allowed run of consecutive targets or non-targets
+     */
+    public static ProtocolBlock trials(final ExperimentLevel level,
+                                       final int trials,
+                                       final long displayMillis,
+                                       final long pauseMillis,
+                                       final long maxDurationMillis,
+                                       final double targetRate,
+                                       final double lureRate,
+                                       final int maxRun) {
+        return new ProtocolBlock(level, trials, displayMillis, pauseMillis, maxDurationMillis, 0,
+                targetRate, lureRate, maxRun);
+    }
+
+    public static ProtocolBlock rest(final long restMillis) {
+        return new ProtocolBlock(null, 0, 0, 0, 0, restMillis, 0, 0, 0);
+    }
+
+    public boolean isRest() {
+        return level == null;
+    }
+
+    public ExperimentLevel getLevel() {
+        return this.level;
+    }
+
+    public int getTrials() {
+        return this.trials;
+    }
+
+    public long getDisplayMillis() {
+        return this.displayMillis;
+    }
+
+    public long getPauseMillis() {
+        return this.pauseMillis;
+    }
+
+    public long getMaxDurationMillis() {
+        return this.maxDurationMillis;
+    }
+
+    public long getRestMillis() {
+        return this.restMillis;
+    }
+
+    public double getTargetRate() {
+        return this.targetRate;
+    }
+
+    public double getLureRate() {
+        return this.lureRate;
+    }
+
+    public int getMaxRun() {
+        return this.maxRun;
+    }
+
+    @Override
+    public String toString() {
+        if (isRest()) {
+            return String.format("rest duration=%d", restMillis);
+        }
+        return String.format("trials level=%s count=%d display=%d pause=%d maxDuration=%d targetRate=%s lureRate=%s maxRun=%d",
+                level.getName(), trials, displayMillis, pauseMillis, maxDurationMillis, targetRate, lureRate, maxRun);
+    }
+}
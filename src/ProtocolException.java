@@ -0,0 +1,12 @@
+public class ProtocolException extends Exception {
+    private final int lineNumber;
+
+    public ProtocolException(final String message, final int lineNumber) {
+        super(String.format("Line %d: %s", lineNumber, message));
+        this.lineNumber = lineNumber;
+    }
+
+    public int getLineNumber() {
+        return this.lineNumber;
+    }
+}
@@ -0,0 +1,223 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures what it costs to put a stimulus or instruction on screen, without a screen. Each frame
+ * repeats the removeAll/add/revalidate cycle of {@link Application#displayTask(int)} on a stand-in
+ * content pane and paints it into an offscreen target, timing layout and paint separately and
+ * counting the bytes allocated per frame.
+ *
+ * Run with -Djava.awt.headless=true on a box without a display, which covers the BufferedImage
+ * targets, or under a virtual framebuffer such as Xvfb to include VolatileImage targets as well.
+ *
+ * Usage: RenderBenchmark [warmupFrames] [measuredFrames]
+ */
+public class RenderBenchmark {
+    private static final int DEFAULT_WARMUP_FRAMES = 200;
+    private static final int DEFAULT_MEASURED_FRAMES = 1000;
+    private static final int VOLATILE_IMAGE_TYPE = -1;
+    // Every atlas rebuild is logged, which would drown out the results. Held here so the level sticks.
+    private static final Logger ATLAS_LOGGER = Logger.getLogger(GlyphAtlas.class.getName());
+
+    private static final Dimension[] WINDOW_SIZES = {
+            new Dimension(800, 600),
+            new Dimension(1280, 720),
+            new Dimension(1920, 1080),
+            new Dimension(2560, 1440),
+            new Dimension(3840, 2160)
+    };
+
+    private static final Map<Integer, String> IMAGE_TYPES = new LinkedHashMap<Integer, String>() {{
+        put(BufferedImage.TYPE_INT_RGB, "INT_RGB");
+        put(BufferedImage.TYPE_INT_ARGB, "INT_ARGB");
+        put(BufferedImage.TYPE_INT_ARGB_PRE, "INT_ARGB_PRE");
+        put(BufferedImage.TYPE_3BYTE_BGR, "3BYTE_BGR");
+    }};
+
+    private final int warmupFrames;
+    private final int measuredFrames;
+    private final ThreadMXBean threadBean;
+    private final boolean allocationSupported;
+
+    public RenderBenchmark(final int warmupFrames, final int measuredFrames) {
+        this.warmupFrames = warmupFrames;
+        this.measuredFrames = measuredFrames;
+        this.threadBean = ManagementFactory.getThreadMXBean();
+        this.allocationSupported = threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported();
+        if (allocationSupported) {
+            ((com.sun.management.ThreadMXBean) threadBean).setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    private Map<String, JComponent> components() {
+        final Map<String, JComponent> components = new LinkedHashMap<>();
+        final StimulusPanel stimulus = new StimulusPanel();
+        stimulus.setNumber(5);
+        components.put("stimulus", stimulus);
+        final JPanel clearScreen = new JPanel();
+        clearScreen.setBackground(StimulusPanel.BACKGROUND);
+        components.put("clearScreen", clearScreen);
+        for (final ExperimentLevel level : ExperimentLevel.values()) {
+            components.put("instruction" + level.getName(), new Instruction(level));
+        }
+        return components;
+    }
+
+    private List<Integer> targetTypes() {
+        final List<Integer> types = new ArrayList<>(IMAGE_TYPES.keySet());
+        if (!GraphicsEnvironment.isHeadless()) {
+            types.add(VOLATILE_IMAGE_TYPE);
+        }
+        return types;
+    }
+
+    public void run() {
+        System.out.println(String.format("%-22s %-10s %-13s %10s %10s %10s %10s %14s",
+                "component", "size", "target", "layoutP50", "paintP50", "paintP99", "paintMax", "allocPerFrame"));
+
+        final Map<String, JComponent> components = components();
+        for (final Map.Entry<String, JComponent> component : components.entrySet()) {
+            for (final Dimension size : WINDOW_SIZES) {
+                for (final int type : targetTypes()) {
+                    runCase(component.getKey(), component.getValue(), size, type);
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-10s %12s %12s %12s", "size", "rasterizeP50", "rasterizeMax", "atlasBytes"));
+        for (final Dimension size : WINDOW_SIZES) {
+            runAtlasCase(size);
+        }
+    }
+
+    /**
+     * Times rasterizing the stimulus glyph atlas, as happens the first time a window takes a size on
+     * a screen, bypassing the shared cache so every rebuild has to rasterize.
+     */
+    private void runAtlasCase(final Dimension size) {
+        final GraphicsConfiguration configuration = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        final LatencyHistogram rasterize = new LatencyHistogram("rasterize");
+
+        GlyphAtlas atlas = null;
+        for (int rebuild = 0; rebuild < warmupFrames + measuredFrames; rebuild++) {
+            final long startNanos = System.nanoTime();
+            atlas = StimulusPanel.rasterizeAtlas(configuration, size.width, size.height);
+            if (rebuild >= warmupFrames) {
+                rasterize.recordSince(startNanos);
+            }
+        }
+
+        System.out.println(String.format("%-10s %10.3fms %10.3fms %11sB",
+                size.width + "x" + size.height,
+                rasterize.getP50Millis(),
+                rasterize.getMaxMillis(),
+                atlas.getSizeInBytes()));
+    }
+
+    private void runCase(final String name, final JComponent component, final Dimension size, final int type) {
+        // Stands in for the frame's content pane, laid out the same way as during a session
+        final JPanel contentPane = new JPanel(new GridLayout(1, 1));
+        contentPane.setBackground(Color.BLACK);
+        contentPane.setSize(size);
+
+        final BufferedImage bufferedImage = type == VOLATILE_IMAGE_TYPE
+                ? null : new BufferedImage(size.width, size.height, type);
+        final VolatileImage volatileImage = type == VOLATILE_IMAGE_TYPE
+                ? GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                        .getDefaultConfiguration().createCompatibleVolatileImage(size.width, size.height)
+                : null;
+
+        final LatencyHistogram layout = new LatencyHistogram("layout");
+        final LatencyHistogram paint = new LatencyHistogram("paint");
+        long allocatedBytes = 0;
+
+        for (int frame = 0; frame < warmupFrames + measuredFrames; frame++) {
+            final boolean measured = frame >= warmupFrames;
+            final long allocatedBefore = allocatedBytes();
+
+            final long layoutStartNanos = System.nanoTime();
+            contentPane.removeAll();
+            contentPane.add(component);
+            // validate() does nothing without a native peer, so lay the tree out directly
+            layOut(contentPane);
+            if (component.getWidth() == 0 || component.getHeight() == 0) {
+                throw new IllegalStateException(String.format("%s was not laid out at %dx%d", name, size.width, size.height));
+            }
+            final long paintStartNanos = System.nanoTime();
+
+            if (volatileImage != null) {
+                volatileImage.validate(GraphicsEnvironment.getLocalGraphicsEnvironment()
+                        .getDefaultScreenDevice().getDefaultConfiguration());
+            }
+            final Graphics2D graphics = volatileImage != null
+                    ? volatileImage.createGraphics() : bufferedImage.createGraphics();
+            contentPane.paint(graphics);
+            graphics.dispose();
+            if (volatileImage != null) {
+                // Flush the accelerated pipeline so the frame is finished before it is timed
+                Toolkit.getDefaultToolkit().sync();
+            }
+            final long paintEndNanos = System.nanoTime();
+
+            if (measured) {
+                layout.record(paintStartNanos - layoutStartNanos);
+                paint.record(paintEndNanos - paintStartNanos);
+                allocatedBytes += allocatedBytes() - allocatedBefore;
+            }
+        }
+
+        System.out.println(String.format("%-22s %-10s %-13s %8.3fms %8.3fms %8.3fms %8.3fms %14s",
+                name,
+                size.width + "x" + size.height,
+                type == VOLATILE_IMAGE_TYPE ? "VOLATILE" : IMAGE_TYPES.get(type),
+                layout.getP50Millis(),
+                paint.getP50Millis(),
+                paint.getP99Millis(),
+                paint.getMaxMillis(),
+                allocationSupported ? (allocatedBytes / measuredFrames) + "B" : "n/a"));
+
+        if (volatileImage != null) {
+            volatileImage.flush();
+        }
+    }
+
+    private static void layOut(final Container container) {
+        container.doLayout();
+        for (final Component child : container.getComponents()) {
+            if (child instanceof Container) {
+                layOut((Container) child);
+            }
+        }
+    }
+
+    private long allocatedBytes() {
+        if (!allocationSupported) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int warmupFrames = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_WARMUP_FRAMES;
+        final int measuredFrames = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MEASURED_FRAMES;
+
+        System.out.println(String.format("RenderBenchmark headless=%s java=%s warmup=%d frames=%d",
+                GraphicsEnvironment.isHeadless(), System.getProperty("java.version"), warmupFrames, measuredFrames));
+        ATLAS_LOGGER.setLevel(Level.WARNING);
+        // Swing components are only safe to touch on the EDT, even offscreen
+        SwingUtilities.invokeAndWait(() -> new RenderBenchmark(warmupFrames, measuredFrames).run());
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * On-disk pool of validated sequences per constraint set, one file per {@link SequenceConstraints#getKey()}
+ * holding one sequence of digits per line. The pool for a constraint set is generated from a seed
+ * derived from its key, so every station ends up with the same pool whether it is read from disk or
+ * generated, and a session seed reproduces the same session anywhere.
+ */
+public class SequenceCache {
+    private static final Logger LOGGER = Logger.getLogger(SequenceCache.class.getName());
+    // Bumped whenever the format or the meaning of a valid pool changes, so stale pools are not read
+    private static final String FORMAT_VERSION = "v2";
+    public static final int POOL_SIZE = 128;
+    private static final SequenceCache DEFAULT_CACHE =
+            new SequenceCache(Paths.get(System.getProperty("user.home"), ".taskloadcognitive", "sequences"));
+
+    private final Path directory;
+    // Pools already read or generated by this process, shared read-only by every session
+    private final Map<String, List<int[]>> loaded;
+
+    public SequenceCache(final Path directory) {
+        this.directory = directory;
+        this.loaded = new ConcurrentHashMap<>();
+    }
+
+    public static SequenceCache defaultCache() {
+        return DEFAULT_CACHE;
+    }
+
+    /**
+     * Returns the pool for the constraint set, generating and storing it on a cache miss.
+     */
+    public List<int[]> getPool(final SequenceConstraints constraints) {
+        return loaded.computeIfAbsent(constraints.getKey(), key -> loadOrGenerate(constraints));
+    }
+
+    private List<int[]> loadOrGenerate(final SequenceConstraints constraints) {
+        final Path file = directory.resolve(FORMAT_VERSION + "_" + constraints.getKey() + ".seq");
+        final List<int[]> cached = read(file, constraints);
+        if (cached != null) {
+            return cached;
+        }
+
+        final List<int[]> pool = new SequenceGenerator(constraints).generate(POOL_SIZE, constraints.getKey().hashCode());
+        write(file, pool);
+        return Collections.unmodifiableList(pool);
+    }
+
+    private List<int[]> read(final Path file, final SequenceConstraints constraints) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        final List<int[]> pool = new ArrayList<>();
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int[] numbers = new int[line.length()];
+                for (int i = 0; i < line.length(); i++) {
+                    numbers[i] = line.charAt(i) - '0';
+                }
+                // Never trust a file on disk with a participant's session
+                if (!constraints.isSatisfiedBy(numbers)) {
+                    LOGGER.warning("Discarding invalid sequence cache " + file);
+                    return null;
+                }
+                pool.add(numbers);
+            }
+            if (pool.size() != POOL_SIZE) {
+                return null;
+            }
+        } catch (final IOException e) {
+            LOGGER.warning("Failed to read sequence cache " + file + ": " + e.getMessage());
+            return null;
+        }
+        return Collections.unmodifiableList(pool);
+    }
+
+    private void write(final Path file, final List<int[]> pool) {
+        try {
+            Files.createDirectories(directory);
+            // Write to a temporary file first, so concurrent sessions never read a half written pool
+            final Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (final BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.US_ASCII)) {
+                for (final int[] numbers : pool) {
+                    final StringBuilder lineBuilder = new StringBuilder(numbers.length);
+                    for (final int number : numbers) {
+                        lineBuilder.append((char) ('0' + number));
+                    }
+                    writer.write(lineBuilder.toString());
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            LOGGER.warning("Failed to write sequence cache " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * What a generated number sequence must satisfy: its length, the exact number of targets and
+ * lures it contains, and the longest allowed run of consecutive targets or non-targets. The runs
+ * a sequence starts and ends with are held to half of that, so any two sequences can be joined
+ * without the run across the join getting too long.
+ */
+public class SequenceConstraints {
+    // Matches the rate of the old uniformly random sequences, where each rule fires one time in eight
+    public static final double DEFAULT_TARGET_RATE = 0.125;
+    public static final double DEFAULT_LURE_RATE = 0.1;
+    public static final int DEFAULT_MAX_RUN = 24;
+
+    private final ExperimentLevel level;
+    private final int length;
+    private final int targetCount;
+    private final int lureCount;
+    private final int maxRun;
+
+    public SequenceConstraints(final ExperimentLevel level,
+                               final int length,
+                               final int targetCount,
+                               final int lureCount,
+                               final int maxRun) {
+        if (length <= 0 || targetCount < 0 || lureCount < 0 || targetCount + lureCount > length || maxRun <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid constraints length=%d targets=%d lures=%d maxRun=%d", length, targetCount, lureCount, maxRun));
+        }
+        if (level == ExperimentLevel.EASY && lureCount != 0) {
+            throw new IllegalArgumentException("The easy level has no lures");
+        }
+        this.level = level;
+        this.length = length;
+        this.targetCount = targetCount;
+        this.lureCount = lureCount;
+        this.maxRun = maxRun;
+
+        // Quick checks for counts no sequence can meet, so they are rejected up front rather than
+        // after the generator has given up
+        final int nonTargets = length - targetCount;
+        if (targetCount == 0 ? length > getMaxEdgeRun() : nonTargets > (targetCount - 1) * maxRun + 2 * getMaxEdgeRun()) {
+            throw new IllegalArgumentException(String.format(
+                    "%d targets cannot break %d trials into runs of at most %d", targetCount, length, maxRun));
+        }
+        // Under the medium rule the trial before every run of targets is two evens in a row, a lure
+        final int targetRuns = (targetCount + maxRun - 1) / maxRun;
+        if (level == ExperimentLevel.MEDIUM && lureCount < targetRuns) {
+            throw new IllegalArgumentException(String.format(
+                    "The medium level needs at least %d lures for %d targets with runs of at most %d, found %d",
+                    targetRuns, targetCount, maxRun, lureCount));
+        }
+    }
+
+    /**
+     * Default lure rate for a level, the easy rule has no near misses.
+     */
+    public static double defaultLureRate(final ExperimentLevel level) {
+        return level == ExperimentLevel.EASY ? 0 : DEFAULT_LURE_RATE;
+    }
+
+    public ExperimentLevel getLevel() {
+        return this.level;
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    public int getTargetCount() {
+        return this.targetCount;
+    }
+
+    public int getLureCount() {
+        return this.lureCount;
+    }
+
+    public int getMaxRun() {
+        return this.maxRun;
+    }
+
+    /**
+     * The longest allowed run at either end of the sequence.
+     */
+    public int getMaxEdgeRun() {
+        return Math.max(1, this.maxRun / 2);
+    }
+
+    /**
+     * Identifies the constraint set, for example as the on-disk cache key.
+     */
+    public String getKey() {
+        return String.format("%s_n%d_t%d_l%d_r%d", level.name(), length, targetCount, lureCount, maxRun);
+    }
+
+    /**
+     * Checks a sequence against every constraint, from scratch.
+     */
+    public boolean isSatisfiedBy(final int[] numbers) {
+        if (numbers.length != length) {
+            return false;
+        }
+
+        int targets = 0;
+        int lures = 0;
+        int run = 0;
+        boolean lastWasTarget = false;
+        boolean inFirstRun = true;
+        for (int i = 0; i < numbers.length; i++) {
+            if (numbers[i] < 1 || numbers[i] > 8) {
+                return false;
+            }
+
+            final TrialKind kind = TrialKind.classify(level, numbers, i);
+            if (kind == TrialKind.TARGET) {
+                targets++;
+            } else if (kind == TrialKind.LURE) {
+                lures++;
+            }
+
+            final boolean isTarget = kind == TrialKind.TARGET;
+            run = (i > 0 && isTarget == lastWasTarget) ? run + 1 : 1;
+            inFirstRun = inFirstRun && run == i + 1;
+            lastWasTarget = isTarget;
+            if (run > (inFirstRun ? getMaxEdgeRun() : maxRun)) {
+                return false;
+            }
+        }
+        return run <= getMaxEdgeRun() && targets == targetCount && lures == lureCount;
+    }
+
+    @Override
+    public String toString() {
+        return getKey();
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates number sequences that satisfy a {@link SequenceConstraints} exactly. Candidates are
+ * drawn by a sampler that steers towards the remaining target and lure quotas, and the ones
+ * that miss are thrown away. Candidates are drawn in parallel batches, each from its own split
+ * of the seeded random stream, so the result only depends on the seed and not on the number of
+ * cores.
+ */
+public class SequenceGenerator {
+    private static final Logger LOGGER = Logger.getLogger(SequenceGenerator.class.getName());
+    private static final int BATCH_SIZE = 1024;
+    private static final int MAX_BATCHES = 1000;
+    private static final int[] EVEN_DIGITS = {2, 4, 6, 8};
+    private static final int[] ODD_DIGITS = {1, 3, 5, 7};
+
+    private final SequenceConstraints constraints;
+
+    public SequenceGenerator(final SequenceConstraints constraints) {
+        this.constraints = constraints;
+    }
+
+    /**
+     * Generates count sequences satisfying the constraints.
+     *
+     * @throws IllegalStateException if the constraints are too tight to satisfy in reasonable time
+     */
+    public List<int[]> generate(final int count, final long seed) {
+        final SplittableRandom root = new SplittableRandom(seed);
+        final List<int[]> accepted = new ArrayList<>(count);
+        int attempts = 0;
+
+        for (int batch = 0; batch < MAX_BATCHES && accepted.size() < count; batch++) {
+            // Split sequentially so every candidate's stream is fixed by the seed before going parallel
+            final SplittableRandom[] streams = new SplittableRandom[BATCH_SIZE];
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                streams[i] = root.split();
+            }
+
+            final List<int[]> valid = IntStream.range(0, BATCH_SIZE)
+                    .parallel()
+                    .mapToObj(i -> drawCandidate(streams[i]))
+                    .filter(candidate -> candidate != null && constraints.isSatisfiedBy(candidate))
+                    .collect(Collectors.toList());
+            attempts += BATCH_SIZE;
+
+            for (final int[] candidate : valid) {
+                if (accepted.size() < count) {
+                    accepted.add(candidate);
+                }
+            }
+        }
+
+        if (accepted.size() < count) {
+            throw new IllegalStateException(String.format(
+                    "Only found %d of %d sequences for %s after %d attempts", accepted.size(), count, constraints, attempts));
+        }
+        LOGGER.info(String.format("Generated %d sequences for %s in %d attempts", count, constraints, attempts));
+        return accepted;
+    }
+
+    /**
+     * Draws one candidate, or returns null as soon as it can no longer satisfy the constraints.
+     */
+    private int[] drawCandidate(final SplittableRandom random) {
+        final ExperimentLevel level = constraints.getLevel();
+        final int length = constraints.getLength();
+        final int[] numbers = new int[length];
+        int targets = 0;
+        int lures = 0;
+        int run = 0;
+        boolean lastWasTarget = false;
+        boolean inFirstRun = true;
+        // A target or lure that could not be placed yet, kept until the primed numbers make it reachable
+        TrialKind deferred = null;
+
+        for (int i = 0; i < length; i++) {
+            final int targetsLeft = constraints.getTargetCount() - targets;
+            final int luresLeft = constraints.getLureCount() - lures;
+            final int roll = random.nextInt(length - i);
+            TrialKind wanted = roll < targetsLeft ? TrialKind.TARGET
+                    : roll < targetsLeft + luresLeft ? TrialKind.LURE : TrialKind.FILLER;
+            // Extending a run of targets is cheaper than starting a new one, which for the medium
+            // rule also costs a lure, so lean towards it while targets outnumber the lures left
+            if (lastWasTarget && targetsLeft > luresLeft && random.nextBoolean()) {
+                wanted = TrialKind.TARGET;
+            }
+            if (deferred != null) {
+                wanted = deferred;
+            }
+            if (i > 0 && run >= (inFirstRun ? constraints.getMaxEdgeRun() : constraints.getMaxRun())) {
+                wanted = lastWasTarget ? TrialKind.FILLER : TrialKind.TARGET;
+            }
+
+            numbers[i] = pickNumber(level, numbers, i, wanted, luresLeft > 0, random);
+            final TrialKind kind = TrialKind.classify(level, numbers, i);
+            if (kind == TrialKind.TARGET) {
+                targets++;
+            } else if (kind == TrialKind.LURE) {
+                lures++;
+            }
+            if (targets > constraints.getTargetCount() || lures > constraints.getLureCount()) {
+                return null;
+            }
+            deferred = (wanted != TrialKind.FILLER && kind != wanted) ? wanted : null;
+
+            final boolean isTarget = kind == TrialKind.TARGET;
+            run = (i > 0 && isTarget == lastWasTarget) ? run + 1 : 1;
+            inFirstRun = inFirstRun && run == i + 1;
+            lastWasTarget = isTarget;
+            if (run > constraints.getMaxRun()) {
+                return null;
+            }
+        }
+
+        return numbers;
+    }
+
+    /**
+     * Picks numbers[i] so that it becomes the wanted kind of trial where possible. When the
+     * wanted kind is not reachable from the previous numbers, picks a filler that makes it
+     * reachable later instead.
+     */
+    private static int pickNumber(final ExperimentLevel level,
+                                  final int[] numbers,
+                                  final int i,
+                                  final TrialKind wanted,
+                                  final boolean luresAllowed,
+                                  final SplittableRandom random) {
+        switch (level) {
+            case EASY:
+                if (wanted == TrialKind.TARGET) {
+                    return 5;
+                }
+                return pickExcluding(random, 5, 5, 5);
+
+            case MEDIUM: {
+                final boolean previousEven = i >= 1 && numbers[i - 1] % 2 == 0;
+                final boolean twoPreviousEven = previousEven && i >= 2 && numbers[i - 2] % 2 == 0;
+                if (wanted == TrialKind.TARGET && twoPreviousEven) {
+                    return pick(random, EVEN_DIGITS);
+                }
+                if (wanted == TrialKind.LURE && previousEven && !twoPreviousEven) {
+                    return pick(random, EVEN_DIGITS);
+                }
+                // An even number is a filler after an odd one, and primes the next trial for a target or lure
+                if (wanted != TrialKind.FILLER && !previousEven) {
+                    return pick(random, EVEN_DIGITS);
+                }
+                if (wanted == TrialKind.TARGET && luresAllowed && !twoPreviousEven) {
+                    return pick(random, EVEN_DIGITS);
+                }
+                return previousEven ? pick(random, ODD_DIGITS) : random.nextInt(8) + 1;
+            }
+
+            case DIFFICULT: {
+                final int back1 = i >= 1 ? numbers[i - 1] : 0;
+                final int back2 = i >= 2 ? numbers[i - 2] : 0;
+                final int back3 = i >= 3 ? numbers[i - 3] : 0;
+                if (wanted == TrialKind.TARGET && i >= 2) {
+                    return back2;
+                }
+                if (wanted == TrialKind.LURE) {
+                    final boolean back1Lure = back1 != 0 && back1 != back2;
+                    final boolean back3Lure = back3 != 0 && back3 != back2;
+                    if (back1Lure && back3Lure) {
+                        return random.nextBoolean() ? back1 : back3;
+                    } else if (back1Lure) {
+                        return back1;
+                    } else if (back3Lure) {
+                        return back3;
+                    }
+                }
+                return pickExcluding(random, back1, back2, back3);
+            }
+
+            default:
+                throw new RuntimeException("This should not happen!");
+        }
+    }
+
+    private static int pick(final SplittableRandom random, final int[] digits) {
+        return digits[random.nextInt(digits.length)];
+    }
+
+    /**
+     * Picks a number from 1 to 8 other than the given ones, 0 standing for "nothing to exclude".
+     */
+    private static int pickExcluding(final SplittableRandom random, final int a, final int b, final int c) {
+        int number;
+        do {
+            number = random.nextInt(8) + 1;
+        } while (number == a || number == b || number == c);
+        return number;
+    }
+}
@@ -0,0 +1,49 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Startup timing for the packaged distribution. With -Dtaskload.startup.probe=true the
+ * application records when the welcome screen and the first stimulus are first painted,
+ * measured from JVM start. It then shows a stimulus on its own and exits once it has been
+ * painted, so a cold start can be timed, or used as the training run for the class-data-sharing
+ * archive, without anyone at the keyboard.
+ */
+public final class StartupProbe {
+    public static final String WELCOME_SCREEN = "welcomeScreen";
+    public static final String FIRST_STIMULUS = "firstStimulus";
+    private static final boolean ENABLED = Boolean.getBoolean("taskload.startup.probe");
+
+    private static final Map<String, Long> MARKS = new LinkedHashMap<>();
+
+    private StartupProbe() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Records the event the first time it happens.
+     *
+     * @return true if the probe is enabled and this is the first time the event happened
+     */
+    public static synchronized boolean mark(final String event) {
+        if (!ENABLED || MARKS.containsKey(event)) {
+            return false;
+        }
+        MARKS.put(event, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Prints every mark as milliseconds since JVM start and exits.
+     */
+    public static synchronized void finish() {
+        final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        for (final Map.Entry<String, Long> mark : MARKS.entrySet()) {
+            System.out.println(String.format("startup %s=%dms", mark.getKey(), mark.getValue() - jvmStartMillis));
+        }
+        System.exit(0);
+    }
+}
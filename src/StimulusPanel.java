@@ -0,0 +1,98 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shows one digit stimulus, drawn from a {@link GlyphAtlas} rasterized at the panel's exact size
+ * in device pixels. The atlas is rebuilt only when that size or the screen changes, so showing
+ * a stimulus never decodes or rescales an image. Panels of the same size on the same screen share
+ * one atlas.
+ */
+public class StimulusPanel extends JPanel {
+    // Colours and proportions of the images the stimuli used to be drawn from
+    public static final Color BACKGROUND = new Color(0x050708);
+    public static final Color FOREGROUND = new Color(0xF3EC1A);
+    private static final double DIGIT_HEIGHT_RATIO = 112.0 / 600;
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.BOLD, 1);
+    private static final int NO_NUMBER = -1;
+    // Atlases are shared read-only between every panel, and so between sessions in the same JVM
+    private static final Map<String, GlyphAtlas> ATLAS_CACHE = new ConcurrentHashMap<>();
+    // Resizing a window by hand goes through many sizes, so only the most recent few are kept
+    private static final int MAX_CACHED_ATLASES = 8;
+
+    private GlyphAtlas atlas;
+    private int number;
+
+    public StimulusPanel() {
+        super();
+        setOpaque(true);
+        setBackground(BACKGROUND);
+        atlas = null;
+        number = NO_NUMBER;
+    }
+
+    public void setNumber(final int number) {
+        this.number = number;
+    }
+
+    /**
+     * Rasterizes the atlas for a panel of the given size ahead of the first paint, e.g. when the
+     * window is resized, so the first stimulus after the change is not delayed by it.
+     */
+    public void prepare(final GraphicsConfiguration configuration, final Dimension size) {
+        if (size.width <= 0 || size.height <= 0) {
+            return;
+        }
+        final AffineTransform transform = configuration == null
+                ? new AffineTransform() : configuration.getDefaultTransform();
+        atlasFor(configuration,
+                (int) Math.round(size.width * transform.getScaleX()),
+                (int) Math.round(size.height * transform.getScaleY()));
+    }
+
+    public GlyphAtlas getAtlas() {
+        return atlas;
+    }
+
+    private GlyphAtlas atlasFor(final GraphicsConfiguration configuration, final int width, final int height) {
+        if (atlas == null || !atlas.isFor(configuration, width, height)) {
+            final String key = String.format("%s:%dx%d",
+                    configuration == null ? "none" : configuration.getDevice().getIDstring(), width, height);
+            if (ATLAS_CACHE.size() >= MAX_CACHED_ATLASES && !ATLAS_CACHE.containsKey(key)) {
+                // Panels keep the atlas they use, so dropping the others only stops them being shared
+                ATLAS_CACHE.clear();
+            }
+            atlas = ATLAS_CACHE.computeIfAbsent(key, k -> rasterizeAtlas(configuration, width, height));
+        }
+        return atlas;
+    }
+
+    /**
+     * Rasterizes a new atlas for an output of the given size in device pixels, bypassing the cache.
+     */
+    static GlyphAtlas rasterizeAtlas(final GraphicsConfiguration configuration, final int width, final int height) {
+        return new GlyphAtlas(FONT, (int) Math.round(height * DIGIT_HEIGHT_RATIO),
+                FOREGROUND, BACKGROUND, configuration, width, height);
+    }
+
+    @Override
+    protected void paintComponent(final Graphics graphics) {
+        super.paintComponent(graphics);
+        if (number == NO_NUMBER) {
+            return;
+        }
+
+        // Draw in device pixels, so a scaled screen gets a sharp atlas rather than a stretched one
+        final Graphics2D deviceGraphics = (Graphics2D) graphics.create();
+        final AffineTransform transform = deviceGraphics.getTransform();
+        final int width = (int) Math.round(getWidth() * transform.getScaleX());
+        final int height = (int) Math.round(getHeight() * transform.getScaleY());
+        deviceGraphics.setTransform(AffineTransform.getTranslateInstance(transform.getTranslateX(), transform.getTranslateY()));
+
+        atlasFor(deviceGraphics.getDeviceConfiguration(), width, height)
+                .drawDigitCentered(deviceGraphics, number, width / 2, height / 2);
+        deviceGraphics.dispose();
+    }
+}
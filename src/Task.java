@@ -1,9 +1,13 @@
+/**
+ * One trial's outcome. The experiment thread runs the trial while key presses arrive on the EDT or
+ * the evdev reader thread, so the state is volatile and startTime is always set before started.
+ */
 public class Task {
-    private Boolean started;
-    private Boolean ended;
-    private Boolean correct;
-    private Long startTime;
-    private Long reactionTime;
+    private volatile Boolean started;
+    private volatile Boolean ended;
+    private volatile Boolean correct;
+    private volatile Long startTime;
+    private volatile Long reactionTime;
     private Boolean canChangeCorrectness;
 
     public Task() {
@@ -23,7 +27,7 @@ public class Task {
         ended = true;
     }
 
-    public void setCorrect(final boolean correct) {
+    public synchronized void setCorrect(final boolean correct) {
         if (!canChangeCorrectness) {
             return;
         }
@@ -48,6 +52,10 @@ public class Task {
         this.startTime = startTime;
     }
 
+    public Long getStartTime() {
+        return this.startTime;
+    }
+
     public void setReactionTime(final long reactionEndTime) {
         this.reactionTime = reactionEndTime - startTime;
     }
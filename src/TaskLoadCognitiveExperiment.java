@@ -1,44 +1,51 @@
 import java.awt.event.KeyEvent;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 public class TaskLoadCognitiveExperiment {
     private static final Logger LOGGER = Logger.getLogger(TaskLoadCognitiveExperiment.class.getName());
-    private static final int DEFAULT_NUMBER_OF_NUMBERS = 250;
-    private static final long FOUR_MINUTES_IN_MILLIS = 4 * 60 * 1000;
-    private static final long ONE_MINUTES_IN_MILLIS = 60 * 1000;
-    private static final long PAUSE_INTERVAL_SECONDS_IN_MILLIS = 1600;
     private static final long DISPLAY_INTERVAL_SECONDS_IN_MILLIS = 500;
+    // Upper bound on a single park, so stop() is noticed promptly while waiting
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
 
     private final String uid;
-    private int[] numbers;
-    private Task[] tasks;
+    private final Protocol protocol;
+    private final long seed;
+    private final List<TrialSequence> sequences;
     private int score;
     private int currentStep;
     private Application application;
+    private final Metrics metrics;
     private volatile boolean shouldStop = false;
-    private ExperimentLevel level;
-    private Task currentTask;
-    private boolean started;
+    private volatile ExperimentLevel level;
+    private volatile Task currentTask;
+    private volatile boolean currentIsTarget;
+    private volatile boolean started;
     private int isPracticeMode;
+    private BufferedWriter csvWriter;
 
     private static final List<String> CSV_HEADERS = new ArrayList<String>() {{
         add("Task");
         add("Number");
         add("Correctness");
         add("Reaction Time");
+        add("Block");
+        add("Level");
     }};
 
     public TaskLoadCognitiveExperiment(final String uid,
                                        final ExperimentLevel level,
                                        final int isPracticeMode,
                                        final Application application) {
-        this(uid, DEFAULT_NUMBER_OF_NUMBERS, level, isPracticeMode, application);
+        this(uid, Protocol.defaultFor(level, isPracticeMode), isPracticeMode, application);
     }
 
     public TaskLoadCognitiveExperiment(final String uid,
@@ -46,28 +53,50 @@ public class TaskLoadCognitiveExperiment {
                                        final ExperimentLevel level,
                                        final int isPracticeMode,
                                        final Application application) {
+        this(uid, Protocol.defaultFor(level, numOfNumbers, isPracticeMode), isPracticeMode, application);
+    }
+
+    public TaskLoadCognitiveExperiment(final String uid,
+                                       final Protocol protocol,
+                                       final int isPracticeMode,
+                                       final Application application) {
         this.uid = uid;
+        this.protocol = protocol;
         this.score = 0;
-        this.level = level;
+        this.level = protocol.getFirstLevel();
         this.currentStep = 0;
-        this.numbers = new int[numOfNumbers];
-        this.tasks = new Task[numOfNumbers];
+        this.seed = protocol.getSeed() != null ? protocol.getSeed() : new Random().nextLong();
+        this.sequences = new ArrayList<>();
         this.application = application;
+        this.metrics = application.getMetrics();
         this.shouldStop = false;
         this.currentTask = null;
         this.started = false;
         this.isPracticeMode = isPracticeMode;
-        generateNumbers();
-        initTasks();
+        this.csvWriter = null;
+
+        // Each block gets its own split of the seeded stream, so blocks do not depend on each other's draws
+        final SplittableRandom root = new SplittableRandom(seed);
+        for (final ProtocolBlock block : protocol.getBlocks()) {
+            sequences.add(block.isRest() ? null : new TrialSequence(
+                    block, root.split(), SequenceCache.defaultCache()));
+        }
     }
 
     private boolean isOnWindows() {
         return System.getProperty("os.name").contains("Windows");
     }
 
-    private void writeInputCSV() {
+    /**
+     * Makes a protocol name safe to use as part of a file name, since it comes straight from the protocol file.
+     */
+    private static String toFileName(final String name) {
+        final String safeName = name.replaceAll("[^A-Za-z0-9._-]", "_").replaceAll("^\\.+", "_");
+        return safeName.isEmpty() ? "protocol" : safeName;
+    }
+
+    private void openInputCSV() {
         if (isPracticeMode == 0) {
-            application.endExperiment();
             return;
         }
 
@@ -80,21 +109,21 @@ public class TaskLoadCognitiveExperiment {
         fileNameStringBuilder.append(isOnWindows() ? "C:\\tmp\\" : "/tmp/");
         fileNameStringBuilder.append(this.uid);
         fileNameStringBuilder.append("_");
-        fileNameStringBuilder.append(this.level.getName());
+        fileNameStringBuilder.append(toFileName(this.protocol.getName()));
         fileNameStringBuilder.append("_");
         fileNameStringBuilder.append(df.format(now));
         fileNameStringBuilder.append(".csv");
         final String outputFileName = fileNameStringBuilder.toString();
         LOGGER.info("Output File: " + outputFileName);
         try {
-            final File file = new File(outputFileName);
-            final FileWriter fileWriter = new FileWriter(file);
+            csvWriter = new BufferedWriter(new FileWriter(new File(outputFileName)));
             final StringBuilder csvBuilder = new StringBuilder();
             csvBuilder.append("UID: ");
             csvBuilder.append(this.uid);
             csvBuilder.append(", Experiment Time: ");
             csvBuilder.append(now.toString());
-            csvBuilder.append(", Level: " + level.getName());
+            csvBuilder.append(", Protocol: " + protocol.getName());
+            csvBuilder.append(", Seed: " + seed);
             csvBuilder.append("\n");
 
             for (int i = 0; i < CSV_HEADERS.size(); i++) {
@@ -104,96 +133,112 @@ public class TaskLoadCognitiveExperiment {
                 }
             }
             csvBuilder.append("\n");
+            csvWriter.write(csvBuilder.toString());
+        } catch (final IOException e) {
+            LOGGER.severe("Failed to write to " + outputFileName);
+            metrics.getCsvWriteFailures().increment();
+            closeInputCSV();
+        }
+    }
 
-            for (int i = 0; i < tasks.length; i++) {
-                if (tasks[i].getCorrect() != null ) {
-                    csvBuilder.append(Integer.toString(i));
-                    csvBuilder.append(",");
-                    csvBuilder.append(Integer.toString(numbers[i]));
-                    csvBuilder.append(",");
-                    csvBuilder.append(Boolean.toString(tasks[i].getCorrect()));
-                    csvBuilder.append(",");
-                    csvBuilder.append(tasks[i].getReactionTime() == null ? "N/A" : Long.toString(tasks[i].getReactionTime()));
-                    csvBuilder.append("\n");
-                }
-            }
+    private void appendInputCSV(final int block, final int number, final Task task) {
+        if (csvWriter == null || task.getCorrect() == null) {
+            return;
+        }
 
-            fileWriter.write(csvBuilder.toString());
-            fileWriter.close();
+        final long writeStartNanos = System.nanoTime();
+        final StringBuilder csvBuilder = new StringBuilder();
+        csvBuilder.append(Integer.toString(currentStep));
+        csvBuilder.append(",");
+        csvBuilder.append(Integer.toString(number));
+        csvBuilder.append(",");
+        csvBuilder.append(Boolean.toString(task.getCorrect()));
+        csvBuilder.append(",");
+        csvBuilder.append(task.getReactionTime() == null ? "N/A" : Long.toString(task.getReactionTime()));
+        csvBuilder.append(",");
+        csvBuilder.append(Integer.toString(block));
+        csvBuilder.append(",");
+        csvBuilder.append(level.getName());
+        csvBuilder.append("\n");
+        try {
+            csvWriter.write(csvBuilder.toString());
+            // Keep every answered trial on disk, so a crash or a killed session loses at most the current row
+            csvWriter.flush();
+        } catch (final IOException e) {
+            LOGGER.severe("Failed to append task " + currentStep + " to the output file");
+            metrics.getCsvWriteFailures().increment();
+            closeInputCSV();
+        } finally {
+            metrics.getAppendInputCSV().recordSince(writeStartNanos);
+        }
+    }
 
-            application.endExperiment();
+    private void closeInputCSV() {
+        if (csvWriter == null) {
+            return;
+        }
+
+        try {
+            csvWriter.close();
         } catch (final IOException e) {
-            LOGGER.severe("Failed to write to " + outputFileName);
+            LOGGER.severe("Failed to close the output file");
+            metrics.getCsvWriteFailures().increment();
+        }
+        csvWriter = null;
+    }
+
+    private void writeInputCSV() {
+        final long writeStartNanos = System.nanoTime();
+        closeInputCSV();
+        metrics.getWriteInputCSV().recordSince(writeStartNanos);
+        metrics.dumpSessionSummary(uid);
+        // A stopped session's window is already gone, so there is nobody to tell
+        if (!shouldStop) {
+            application.endExperiment();
         }
     }
 
     public void validateKeyPress(final KeyEvent e) {
+        validateKeyPress(e.getKeyCode(), e.getWhen());
+    }
+
+    /**
+     * @param keyCode the AWT key code of the key pressed
+     * @param eventTimeMillis when the key was pressed, in System.currentTimeMillis time
+     */
+    public void validateKeyPress(final int keyCode, final long eventTimeMillis) {
         if (!this.started) {
             return;
         }
 
-        if (currentTask == null) {
+        final Task task = currentTask;
+        if (task == null) {
             throw new RuntimeException("Current task is null, this is terrible!");
         }
 
-        if (!currentTask.isStarted() || currentTask.isEnded()) {
+        if (!task.isStarted() || task.isEnded()) {
             LOGGER.warning("Task is not started or task is ended");
             return;
         }
 
-        switch (level) {
-            case EASY:
-                if (numbers[currentStep] != 5) {
-                    currentTask.setCorrect(false);
-                    return;
-                }
-
-                if (e.getKeyCode() != KeyEvent.VK_SPACE) {
-                    // Check current task in experiment
-                    currentTask.setCorrect(false);
-                } else {
-                    currentTask.setCorrect(true);
-                    currentTask.setReactionTime(System.currentTimeMillis());
-                }
-                break;
-
-            case MEDIUM:
-                if (currentStep - 2 < 0
-                        || !(isEvenNumber(numbers[currentStep])
-                                && isEvenNumber(numbers[currentStep - 1])
-                                && isEvenNumber(numbers[currentStep - 2])
-                            )) {
-                    currentTask.setCorrect(false);
-                    return;
-                }
-
-                if (e.getKeyCode() != KeyEvent.VK_SPACE) {
-                    // Check current task in experiment
-                    currentTask.setCorrect(false);
-                } else {
-                    currentTask.setCorrect(true);
-                    currentTask.setReactionTime(System.currentTimeMillis());
-                }
-                break;
-
-            case DIFFICULT:
-                if (currentStep - 2 < 0 || numbers[currentStep] != numbers[currentStep - 2]) {
-                    currentTask.setCorrect(false);
-                    return;
-                }
-
-                if (e.getKeyCode() != KeyEvent.VK_SPACE) {
-                    // Check current task in experiment
-                    currentTask.setCorrect(false);
-                } else {
-                    currentTask.setCorrect(true);
-                    currentTask.setReactionTime(System.currentTimeMillis());
-                }
+        // Input backends with their own timestamps can deliver a press made before this task began
+        final Long startTime = task.getStartTime();
+        if (startTime == null || eventTimeMillis < startTime) {
+            LOGGER.warning("Key press happened before the current task started");
+            return;
+        }
 
-                break;
+        if (!currentIsTarget) {
+            task.setCorrect(false);
+            return;
+        }
 
-            default:
-                throw new RuntimeException("This should not happen");
+        if (keyCode != KeyEvent.VK_SPACE) {
+            // Check current task in experiment
+            task.setCorrect(false);
+        } else {
+            task.setCorrect(true);
+            task.setReactionTime(eventTimeMillis);
         }
     }
 
@@ -203,6 +248,16 @@ public class TaskLoadCognitiveExperiment {
 
     public void start() {
         LOGGER.info(String.format("Starting experiment with user uid=%s", uid));
+        LOGGER.info(String.format("Protocol=%s, blocks=%d, trials=%d",
+                protocol.getName(), protocol.getBlocks().size(), protocol.getTotalTrials()));
+        LOGGER.info(String.format("Seed=%d", seed));
+
+        for (final TrialSequence sequence : sequences) {
+            if (sequence != null) {
+                sequence.prepare();
+            }
+        }
+
         LOGGER.info("Start counting down");
 
         application.clearScreen();
@@ -213,133 +268,119 @@ public class TaskLoadCognitiveExperiment {
             LOGGER.severe("Interrupted");
         }
 
-        final long experimentStartTime = System.currentTimeMillis();
-        final long experimentEndTime = experimentStartTime
-                + (isPracticeMode == 0 ? ONE_MINUTES_IN_MILLIS : FOUR_MINUTES_IN_MILLIS);
-
         try {
             Thread.sleep(DISPLAY_INTERVAL_SECONDS_IN_MILLIS * 2);
         } catch (final InterruptedException e) {
             LOGGER.warning("Thread interrupted");
         }
 
-        while (!shouldStop && currentStep < numbers.length) {
+        openInputCSV();
 
-            if (System.currentTimeMillis() > experimentEndTime) {
-                break;
-            }
-
-            application.clearScreen();
-            currentTask = tasks[currentStep];
-            started = true;
+        ExperimentLevel shownLevel = level;
+        final List<ProtocolBlock> blocks = protocol.getBlocks();
+        for (int i = 0; i < blocks.size() && !shouldStop; i++) {
+            final ProtocolBlock block = blocks.get(i);
+            LOGGER.info(String.format("Block %d: %s", i, block));
 
-            if (currentTask == null) {
-                LOGGER.severe("Current task is null, this is terrible!");
-                break;
+            if (block.isRest()) {
+                runRest(block);
+                continue;
             }
 
-            currentTask.setStarted();
-            currentTask.setStartTime(System.currentTimeMillis());
-
-            application.displayTask(numbers[currentStep]);
-            final long endTime = System.currentTimeMillis() + DISPLAY_INTERVAL_SECONDS_IN_MILLIS;
-            final long endKeypressTime = endTime + PAUSE_INTERVAL_SECONDS_IN_MILLIS;
-            boolean cleared = false;
-            while (!shouldStop) {
-                if (System.currentTimeMillis() > endKeypressTime) {
-                    break;
-                }
-
-                if (System.currentTimeMillis() > endTime && !cleared) {
-                    application.clearScreen();
-                    cleared = true;
-                }
+            if (block.getLevel() != shownLevel) {
+                started = false;
+                application.showLevelInstruction(block.getLevel());
+                shownLevel = block.getLevel();
             }
-            currentTask.setEnded();
-
-            switch (level) {
-                case EASY:
-                    if (numbers[currentStep] != 5) {
-                        currentTask.setCorrect(true);
-                        break;
-                    }
-
-                    currentTask.setCorrect(false);
-                    break;
-
-                case MEDIUM:
-                    if (currentStep < 2) {
-                        currentTask.setCorrect(true);
-                        break;
-                    }
-
-                    if (!(isEvenNumber(numbers[currentStep])
-                            && isEvenNumber(numbers[currentStep - 1])
-                            && isEvenNumber(numbers[currentStep - 2]))) {
-                        currentTask.setCorrect(true);
-                    }
-
-                    currentTask.setCorrect(false);
-                    break;
-
-                case DIFFICULT:
-                    if (currentStep < 2) {
-                        currentTask.setCorrect(true);
-                        break;
-                    }
-
-                    if (numbers[currentStep] != numbers[currentStep - 2]) {
-                        currentTask.setCorrect(true);
-                    }
-
-                    currentTask.setCorrect(false);
-                    break;
-                default:
-                    throw new RuntimeException("This should not happen!");
-            }
-
-            currentStep++;
+            runTrials(i, block, sequences.get(i));
         }
 
         LOGGER.info("Experiment finished");
-//        printResult();
         writeInputCSV();
         started = false;
     }
 
-    public boolean getStarted() {
-        return this.started;
+    private void runRest(final ProtocolBlock block) {
+        started = false;
+        application.showRestBreak();
+
+        parkUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(block.getRestMillis()));
+        application.clearScreen();
     }
 
-    private void printResult() {
-        for (int i = 0; i < tasks.length; i++) {
-            final StringBuilder stringBuilder = new StringBuilder();
+    private void runTrials(final int blockIndex, final ProtocolBlock block, final TrialSequence sequence) {
+        level = block.getLevel();
+
+        final long blockStartTime = System.currentTimeMillis();
+        final long blockEndTime = block.getMaxDurationMillis() == 0
+                ? Long.MAX_VALUE : blockStartTime + block.getMaxDurationMillis();
+        final long displayNanos = TimeUnit.MILLISECONDS.toNanos(block.getDisplayMillis());
+        final long trialNanos = displayNanos + TimeUnit.MILLISECONDS.toNanos(block.getPauseMillis());
+        // Onsets are scheduled on a fixed grid so that a late trial does not push back the ones after it
+        long onsetNanos = System.nanoTime();
+
+        while (!shouldStop && sequence.hasNext()) {
+
+            if (System.currentTimeMillis() > blockEndTime) {
+                break;
+            }
+
+            final int number = sequence.next();
+            application.clearScreen();
+            currentIsTarget = sequence.getCurrentKind() == TrialKind.TARGET;
+            currentTask = new Task();
+            started = true;
+
+            // After a stall of more than a whole trial, drop the missed grid slots rather than
+            // running the overdue trials back to back
+            final long overdueNanos = System.nanoTime() - onsetNanos;
+            if (overdueNanos > trialNanos) {
+                final long skippedSlots = overdueNanos / trialNanos;
+                LOGGER.warning(String.format("Trial %d is %dms late, skipping %d slots of the trial grid",
+                        currentStep, TimeUnit.NANOSECONDS.toMillis(overdueNanos), skippedSlots));
+                onsetNanos += skippedSlots * trialNanos;
+            }
 
-            stringBuilder.append("[Task ");
-            stringBuilder.append(i);
-            stringBuilder.append("]: ");
-            stringBuilder.append("Correct: ");
-            stringBuilder.append(tasks[i].getCorrect() == null ? "N/A Not started" : tasks[i].getCorrect() + " ");
-            stringBuilder.append(tasks[i].getReactionTime() == null ? "" : ("Reaction Time: " + tasks[i].getReactionTime() + "ms"));
+            parkUntil(onsetNanos);
+            final long actualOnsetNanos = System.nanoTime();
+            metrics.getTrialOnsetLateness().record(actualOnsetNanos - onsetNanos);
+            currentTask.setStartTime(System.currentTimeMillis());
+            currentTask.setStarted();
 
-            LOGGER.info("[Task " + i + "]: Correct: " + tasks[i].getCorrect() + "\n");
-            if (tasks[i].getReactionTime() != null) {
-                LOGGER.info("Reaction Time: " + tasks[i].getReactionTime());
+            application.displayTask(number);
+            // The stimulus is always shown for the full display time, lateness only comes out of the pause
+            parkUntil(actualOnsetNanos + displayNanos);
+            if (!shouldStop) {
+                application.clearScreen();
             }
+            parkUntil(onsetNanos + trialNanos);
+            onsetNanos += trialNanos;
+            currentTask.setEnded();
+
+            // Correctness is only set once, so a response recorded during the trial takes precedence
+            if (!currentIsTarget) {
+                currentTask.setCorrect(true);
+            }
+            currentTask.setCorrect(false);
+
+            appendInputCSV(blockIndex, number, currentTask);
+            currentStep++;
         }
     }
 
-    private void generateNumbers() {
-        final Random random = new Random();
-        for (int i = 0; i < numbers.length; i++) {
-            numbers[i] = random.nextInt(8) + 1;
+    /**
+     * Parks the experiment thread until the given System.nanoTime deadline, rather than spinning,
+     * so that sessions sharing the machine are not starved of CPU.
+     */
+    private void parkUntil(final long deadlineNanos) {
+        long remaining;
+        while (!shouldStop && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(Math.min(remaining, MAX_PARK_NANOS));
         }
     }
 
-    private void initTasks() {
-        for (int i = 0; i < tasks.length; i++) {
-            tasks[i] = new Task();
-        }
+    public boolean getStarted() {
+        return this.started;
     }
 
     public int getScore() {
@@ -357,8 +398,4 @@ public class TaskLoadCognitiveExperiment {
     public void toNextStep() {
         this.currentStep++;
     }
-
-    private boolean isEvenNumber(final int num) {
-        return num % 2 == 0;
-    }
 }
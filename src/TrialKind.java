@@ -0,0 +1,102 @@
+import java.util.SplittableRandom;
+
+/**
+ * How a trial relates to the ones before it under a level's rule. Targets are the trials the
+ * participant must respond to. Lures are near misses: they look like a target at a glance but
+ * are not one.
+ */
+public enum TrialKind {
+    TARGET,
+    LURE,
+    FILLER;
+
+    // The rules and lures look back at most three numbers
+    public static final int WINDOW = 4;
+
+    /**
+     * @param position index of the current trial within its block
+     * @param recent recent[0] is the current number, recent[k] the number k trials back
+     */
+    public static TrialKind classify(final ExperimentLevel level, final int position, final int[] recent) {
+        switch (level) {
+            case EASY:
+                return recent[0] == 5 ? TARGET : FILLER;
+
+            case MEDIUM:
+                if (position >= 2 && isEven(recent[0]) && isEven(recent[1]) && isEven(recent[2])) {
+                    return TARGET;
+                }
+                // Two evens in a row, one short of a target
+                if (position >= 1 && isEven(recent[0]) && isEven(recent[1])) {
+                    return LURE;
+                }
+                return FILLER;
+
+            case DIFFICULT:
+                if (position >= 2 && recent[0] == recent[2]) {
+                    return TARGET;
+                }
+                // A 1-back or 3-back repeat instead of a 2-back one
+                if ((position >= 1 && recent[0] == recent[1]) || (position >= 3 && recent[0] == recent[3])) {
+                    return LURE;
+                }
+                return FILLER;
+
+            default:
+                throw new RuntimeException("This should not happen!");
+        }
+    }
+
+    /**
+     * Classifies numbers[index], treating index 0 as the start of the block.
+     */
+    public static TrialKind classify(final ExperimentLevel level, final int[] numbers, final int index) {
+        final int[] recent = new int[WINDOW];
+        for (int k = 0; k < WINDOW && k <= index; k++) {
+            recent[k] = numbers[index - k];
+        }
+        return classify(level, index, recent);
+    }
+
+    /**
+     * A random renaming of the digits 1 to 8 that keeps the kind of every trial under the level's
+     * rule, so one sequence can be shown with different digits. relabeling[digit] is the new digit.
+     */
+    public static int[] relabeling(final ExperimentLevel level, final SplittableRandom random) {
+        final int[] relabeling = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+        switch (level) {
+            case EASY:
+                // Only whether a digit is 5 matters
+                shuffle(relabeling, random, 1, 2, 3, 4, 6, 7, 8);
+                break;
+
+            case MEDIUM:
+                // Only whether a digit is even matters
+                shuffle(relabeling, random, 2, 4, 6, 8);
+                shuffle(relabeling, random, 1, 3, 5, 7);
+                break;
+
+            case DIFFICULT:
+                // Only which digits repeat matters
+                shuffle(relabeling, random, 1, 2, 3, 4, 5, 6, 7, 8);
+                break;
+
+            default:
+                throw new RuntimeException("This should not happen!");
+        }
+        return relabeling;
+    }
+
+    private static void shuffle(final int[] relabeling, final SplittableRandom random, final int... digits) {
+        for (int i = digits.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int swapped = relabeling[digits[i]];
+            relabeling[digits[i]] = relabeling[digits[j]];
+            relabeling[digits[j]] = swapped;
+        }
+    }
+
+    private static boolean isEven(final int num) {
+        return num % 2 == 0;
+    }
+}
@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+/**
+ * The numbers for one block of trials, streamed one at a time. The block is cut into segments of
+ * about SEGMENT_LENGTH trials, each drawn from the cached pool for its constraint set, so only one
+ * segment is held in memory however long the block is. Target and lure counts are spread over the
+ * segments so that the block as a whole hits its rates exactly.
+ *
+ * The pools are the same on every station, so each session deals the sequences of a pool in its
+ * own shuffled order, never repeating one until the whole pool has been used, and shows each with
+ * its own renaming of the digits that keeps every trial's kind.
+ */
+public class TrialSequence {
+    private static final Logger LOGGER = Logger.getLogger(TrialSequence.class.getName());
+    public static final int SEGMENT_LENGTH = 100;
+
+    private final ProtocolBlock block;
+    private final ExperimentLevel level;
+    private final int trials;
+    private final SplittableRandom random;
+    private final SequenceCache cache;
+    private final Map<String, List<int[]>> pools;
+    // Indices of the sequences in each pool not yet used in this block, in the order they are dealt
+    private final Map<String, List<Integer>> unused;
+    private final int[] recent;
+    private int position;
+    private int segmentStart;
+    private int[] segment;
+    private TrialKind currentKind;
+    // Length of the run of targets, or of non-targets, that the trials so far end with
+    private int trailingRun;
+
+    public TrialSequence(final ProtocolBlock block,
+                         final SplittableRandom random,
+                         final SequenceCache cache) {
+        this.block = block;
+        this.level = block.getLevel();
+        this.trials = block.getTrials();
+        this.random = random;
+        this.cache = cache;
+        this.pools = new HashMap<>();
+        this.unused = new HashMap<>();
+        this.recent = new int[TrialKind.WINDOW];
+        this.position = 0;
+        this.segmentStart = 0;
+        this.segment = null;
+        this.currentKind = null;
+        this.trailingRun = 0;
+    }
+
+    /**
+     * The constraints for the segment of the block starting at the given trial. A short remainder is
+     * folded into the last segment rather than becoming a segment of its own.
+     *
+     * @throws IllegalArgumentException if the block's rates ask for counts no segment can meet
+     */
+    private static SequenceConstraints constraintsAt(final ProtocolBlock block, final int start) {
+        final int trials = block.getTrials();
+        final int length = trials - start < 2 * SEGMENT_LENGTH ? trials - start : SEGMENT_LENGTH;
+        final int targets = quota(block.getTargetRate(), start, length);
+        final int lures = quota(block.getLureRate(), start, length);
+        return new SequenceConstraints(block.getLevel(), length, targets, lures, block.getMaxRun());
+    }
+
+    /**
+     * Every distinct constraint set the segments of a trials block use.
+     *
+     * @throws IllegalArgumentException if the block's rates ask for counts no segment can meet
+     */
+    public static List<SequenceConstraints> segmentConstraints(final ProtocolBlock block) {
+        final Map<String, SequenceConstraints> distinct = new LinkedHashMap<>();
+        int start = 0;
+        while (start < block.getTrials()) {
+            final SequenceConstraints constraints = constraintsAt(block, start);
+            distinct.putIfAbsent(constraints.getKey(), constraints);
+            start += constraints.getLength();
+        }
+        return new ArrayList<>(distinct.values());
+    }
+
+    private static int quota(final double rate, final int start, final int length) {
+        return (int) (Math.round(rate * (start + length)) - Math.round(rate * start));
+    }
+
+    /**
+     * Loads or generates the pools for every segment, so nothing is generated once trials are running.
+     */
+    public void prepare() {
+        segmentConstraints(block).forEach(this::poolFor);
+    }
+
+    public boolean hasNext() {
+        return position < trials;
+    }
+
+    public int next() {
+        if (segment == null || position - segmentStart >= segment.length) {
+            nextSegment();
+        }
+
+        final int number = segment[position - segmentStart];
+        System.arraycopy(recent, 0, recent, 1, TrialKind.WINDOW - 1);
+        recent[0] = number;
+        final TrialKind previousKind = currentKind;
+        currentKind = TrialKind.classify(level, position, recent);
+        trailingRun = previousKind != null && isTarget(previousKind) == isTarget(currentKind) ? trailingRun + 1 : 1;
+        position++;
+        return number;
+    }
+
+    /**
+     * The kind of the number last returned by {@link #next()}.
+     */
+    public TrialKind getCurrentKind() {
+        return this.currentKind;
+    }
+
+    private void nextSegment() {
+        if (segment != null) {
+            segmentStart += segment.length;
+        }
+
+        final SequenceConstraints constraints = constraintsAt(block, segmentStart);
+        final List<int[]> pool = poolFor(constraints);
+        if (pool == null) {
+            segment = new int[constraints.getLength()];
+            for (int i = 0; i < segment.length; i++) {
+                segment[i] = random.nextInt(8) + 1;
+            }
+            return;
+        }
+
+        // Prefer a segment whose first trials keep their kind next to the end of the previous one,
+        // so the counts of the joined block are still exact
+        final List<Integer> deck = unusedIn(constraints, pool.size());
+        final int[] relabeling = TrialKind.relabeling(level, random);
+        for (int i = 0; i < deck.size(); i++) {
+            final int[] candidate = relabel(pool.get(deck.get(i)), relabeling);
+            if (joinsCleanly(candidate)) {
+                deck.remove(i);
+                segment = candidate;
+                return;
+            }
+        }
+        LOGGER.warning("No sequence in the pool joins cleanly for " + constraints);
+        segment = relabel(pool.get(deck.remove(0)), relabeling);
+    }
+
+    /**
+     * The pool indices not yet used in this block, dealt afresh once every sequence has been used.
+     */
+    private List<Integer> unusedIn(final SequenceConstraints constraints, final int poolSize) {
+        List<Integer> deck = unused.get(constraints.getKey());
+        if (deck != null && !deck.isEmpty()) {
+            return deck;
+        }
+        if (deck != null) {
+            LOGGER.info(String.format("Every sequence in the pool for %s has been used, dealing it again", constraints));
+        }
+
+        deck = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            deck.add(i);
+        }
+        for (int i = poolSize - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            deck.set(i, deck.set(j, deck.get(i)));
+        }
+        unused.put(constraints.getKey(), deck);
+        return deck;
+    }
+
+    private static int[] relabel(final int[] numbers, final int[] relabeling) {
+        final int[] relabeled = new int[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            relabeled[i] = relabeling[numbers[i]];
+        }
+        return relabeled;
+    }
+
+    private boolean joinsCleanly(final int[] candidate) {
+        if (segmentStart == 0) {
+            return true;
+        }
+
+        final int[] joined = recent.clone();
+        for (int j = 0; j < Math.min(TrialKind.WINDOW - 1, candidate.length); j++) {
+            System.arraycopy(joined, 0, joined, 1, TrialKind.WINDOW - 1);
+            joined[0] = candidate[j];
+            if (TrialKind.classify(level, segmentStart + j, joined) != TrialKind.classify(level, candidate, j)) {
+                return false;
+            }
+        }
+
+        // The pool only bounds runs within a segment, so a run carried over the join is checked here
+        final boolean carriedIsTarget = isTarget(currentKind);
+        int run = trailingRun;
+        for (int j = 0; j < candidate.length && isTarget(TrialKind.classify(level, candidate, j)) == carriedIsTarget; j++) {
+            run++;
+        }
+        return run <= block.getMaxRun();
+    }
+
+    private static boolean isTarget(final TrialKind kind) {
+        return kind == TrialKind.TARGET;
+    }
+
+    private List<int[]> poolFor(final SequenceConstraints constraints) {
+        if (pools.containsKey(constraints.getKey())) {
+            return pools.get(constraints.getKey());
+        }
+
+        List<int[]> pool;
+        try {
+            pool = cache.getPool(constraints);
+        } catch (final IllegalStateException e) {
+            // Very short blocks can ask for counts that no sequence satisfies
+            LOGGER.warning(e.getMessage() + ", falling back to unconstrained numbers");
+            pool = null;
+        }
+        pools.put(constraints.getKey(), pool);
+        return pool;
+    }
+}